@@ -108,13 +108,13 @@ public class NinePatchChunk implements Serializable {
         }
     }
 
-    private void draw(BufferedImage image, Graphics2D graphics2D, int x, int y, int scaledWidth,
+    private void draw(final BufferedImage image, Graphics2D graphics2D, int x, int y, int scaledWidth,
             int scaledHeight) {
         if (scaledWidth <= 1 || scaledHeight <= 1) {
             return;
         }
 
-        Graphics2D g = (Graphics2D)graphics2D.create();
+        final Graphics2D g = (Graphics2D)graphics2D.create();
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
                 RenderingHints.VALUE_INTERPOLATION_BILINEAR);
 
@@ -125,88 +125,131 @@ public class NinePatchChunk implements Serializable {
             }
 
             g.translate(x, y);
-            x = y = 0;
-
-            DrawingData data = computePatches(scaledWidth, scaledHeight);
-
-            int fixedIndex = 0;
-            int horizontalIndex = 0;
-            int verticalIndex = 0;
-            int patchIndex = 0;
-
-            boolean hStretch;
-            boolean vStretch;
-
-            float vWeightSum = 1.0f;
-            float vRemainder = data.mRemainderVertical;
-
-            vStretch = mVerticalStartWithPatch;
-            while (y < scaledHeight - 1) {
-                hStretch = mHorizontalStartWithPatch;
-
-                int height = 0;
-                float vExtra = 0.0f;
-
-                float hWeightSum = 1.0f;
-                float hRemainder = data.mRemainderHorizontal;
-
-                while (x < scaledWidth - 1) {
-                    Rectangle r;
-                    if (!vStretch) {
-                        if (hStretch) {
-                            r = mHorizontalPatches.get(horizontalIndex++);
-                            float extra = r.width / data.mHorizontalPatchesSum;
-                            int width = (int) (extra * hRemainder / hWeightSum);
-                            hWeightSum -= extra;
-                            hRemainder -= width;
-                            g.drawImage(image, x, y, x + width, y + r.height, r.x, r.y,
-                                    r.x + r.width, r.y + r.height, null);
-                            x += width;
-                        } else {
-                            r = mFixed.get(fixedIndex++);
-                            g.drawImage(image, x, y, x + r.width, y + r.height, r.x, r.y,
-                                    r.x + r.width, r.y + r.height, null);
-                            x += r.width;
-                        }
-                        height = r.height;
-                    } else {
-                        if (hStretch) {
-                            r = mPatches.get(patchIndex++);
-                            vExtra = r.height / data.mVerticalPatchesSum;
-                            height = (int) (vExtra * vRemainder / vWeightSum);
-                            float extra = r.width / data.mHorizontalPatchesSum;
-                            int width = (int) (extra * hRemainder / hWeightSum);
-                            hWeightSum -= extra;
-                            hRemainder -= width;
-                            g.drawImage(image, x, y, x + width, y + height, r.x, r.y,
-                                    r.x + r.width, r.y + r.height, null);
-                            x += width;
-                        } else {
-                            r = mVerticalPatches.get(verticalIndex++);
-                            vExtra = r.height / data.mVerticalPatchesSum;
-                            height = (int) (vExtra * vRemainder / vWeightSum);
-                            g.drawImage(image, x, y, x + r.width, y + height, r.x, r.y,
-                                    r.x + r.width, r.y + r.height, null);
-                            x += r.width;
-                        }
 
-                    }
-                    hStretch = !hStretch;
-                }
-                x = 0;
-                y += height;
-                if (vStretch) {
-                    vWeightSum -= vExtra;
-                    vRemainder -= height;
+            visit(scaledWidth, scaledHeight, new PatchVisitor() {
+                @Override
+                public void patch(int x, int y, int width, int height, Rectangle r) {
+                    g.drawImage(image, x, y, x + width, y + height, r.x, r.y,
+                            r.x + r.width, r.y + r.height, null);
                 }
-                vStretch = !vStretch;
-            }
-
+            });
         } finally {
             g.dispose();
         }
     }
 
+    // EDIT: By Wytrem, lets the patches be drawn by something else than Java2D (like OpenGL)
+    /**
+     * Receives the patches of a nine patch layout.
+     */
+    public interface PatchVisitor {
+        /**
+         * Called for each patch to draw.
+         *
+         * @param x the x position of the patch in the drawn area.
+         * @param y the y position of the patch in the drawn area.
+         * @param width the drawn width of the patch.
+         * @param height the drawn height of the patch.
+         * @param source the part of the image content to draw, must not be modified.
+         */
+        void patch(int x, int y, int width, int height, Rectangle source);
+    }
+
+    // EDIT: By Wytrem, extracted from draw
+    /**
+     * Computes where each patch goes when the nine patch is drawn at the given size.
+     *
+     * @param scaledWidth the drawn width.
+     * @param scaledHeight the drawn height.
+     * @param visitor receives the patches, from left to right and top to bottom.
+     * @return <code>false</code> if there are no patches (the image is just scaled).
+     */
+    public boolean visit(int scaledWidth, int scaledHeight, PatchVisitor visitor) {
+        if (mPatches.size() == 0) {
+            return false;
+        }
+
+        if (scaledWidth <= 1 || scaledHeight <= 1) {
+            return true;
+        }
+
+        int x = 0;
+        int y = 0;
+
+        DrawingData data = computePatches(scaledWidth, scaledHeight);
+
+        int fixedIndex = 0;
+        int horizontalIndex = 0;
+        int verticalIndex = 0;
+        int patchIndex = 0;
+
+        boolean hStretch;
+        boolean vStretch;
+
+        float vWeightSum = 1.0f;
+        float vRemainder = data.mRemainderVertical;
+
+        vStretch = mVerticalStartWithPatch;
+        while (y < scaledHeight - 1) {
+            hStretch = mHorizontalStartWithPatch;
+
+            int height = 0;
+            float vExtra = 0.0f;
+
+            float hWeightSum = 1.0f;
+            float hRemainder = data.mRemainderHorizontal;
+
+            while (x < scaledWidth - 1) {
+                Rectangle r;
+                if (!vStretch) {
+                    if (hStretch) {
+                        r = mHorizontalPatches.get(horizontalIndex++);
+                        float extra = r.width / data.mHorizontalPatchesSum;
+                        int width = (int) (extra * hRemainder / hWeightSum);
+                        hWeightSum -= extra;
+                        hRemainder -= width;
+                        visitor.patch(x, y, width, r.height, r);
+                        x += width;
+                    } else {
+                        r = mFixed.get(fixedIndex++);
+                        visitor.patch(x, y, r.width, r.height, r);
+                        x += r.width;
+                    }
+                    height = r.height;
+                } else {
+                    if (hStretch) {
+                        r = mPatches.get(patchIndex++);
+                        vExtra = r.height / data.mVerticalPatchesSum;
+                        height = (int) (vExtra * vRemainder / vWeightSum);
+                        float extra = r.width / data.mHorizontalPatchesSum;
+                        int width = (int) (extra * hRemainder / hWeightSum);
+                        hWeightSum -= extra;
+                        hRemainder -= width;
+                        visitor.patch(x, y, width, height, r);
+                        x += width;
+                    } else {
+                        r = mVerticalPatches.get(verticalIndex++);
+                        vExtra = r.height / data.mVerticalPatchesSum;
+                        height = (int) (vExtra * vRemainder / vWeightSum);
+                        visitor.patch(x, y, r.width, height, r);
+                        x += r.width;
+                    }
+
+                }
+                hStretch = !hStretch;
+            }
+            x = 0;
+            y += height;
+            if (vStretch) {
+                vWeightSum -= vExtra;
+                vRemainder -= height;
+            }
+            vStretch = !vStretch;
+        }
+
+        return true;
+    }
+
     /**
      * Fills the given array with the nine patch padding.
      *
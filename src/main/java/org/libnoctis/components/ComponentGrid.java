@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.components;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Component Grid
+ *
+ * <p>
+ *     A spatial index of the children of a {@link NContainer} : the container
+ *     area is cut in square cells, each one knowing the children overlapping
+ *     it. Finding the children at a position only looks at one cell. Children
+ *     are moved in the grid when their bounds change.
+ * </p>
+ *
+ * @author Litarvan
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+final class ComponentGrid
+{
+    /**
+     * The cells are {@code 1 << CELL_SHIFT} pixels wide.
+     */
+    private static final int CELL_SHIFT = 6;
+
+    /**
+     * Children overlapping more cells than this are kept in a list checked by
+     * every query instead.
+     */
+    private static final int MAX_CELLS = 64;
+
+    /**
+     * Sorts children from the bottom one to the topmost one.
+     */
+    private final Comparator<NComponent> order = new Comparator<NComponent>() {
+        @Override
+        public int compare(NComponent a, NComponent b)
+        {
+            long difference = entries.get(a).order - entries.get(b).order;
+
+            return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+        }
+    };
+
+    /**
+     * The children in each non empty cell, by cell key.
+     */
+    private final Map<Long, List<NComponent>> cells = new HashMap<Long, List<NComponent>>();
+
+    /**
+     * The cells covered by each child.
+     */
+    private final Map<NComponent, Entry> entries = new IdentityHashMap<NComponent, Entry>();
+
+    /**
+     * The children overlapping too many cells.
+     */
+    private final List<NComponent> oversized = new ArrayList<NComponent>();
+
+    /**
+     * The order of the next added child, the last added children are drawn
+     * on top.
+     */
+    private long nextOrder;
+
+    /**
+     * Adds a child, on top of the others.
+     *
+     * @param component The child.
+     */
+    synchronized void add(NComponent component)
+    {
+        Entry entry = new Entry(nextOrder++);
+        entries.put(component, entry);
+
+        insert(component, entry);
+    }
+
+    /**
+     * Removes a child.
+     *
+     * @param component The child.
+     */
+    synchronized void remove(NComponent component)
+    {
+        Entry entry = entries.remove(component);
+
+        if (entry != null)
+            erase(component, entry);
+    }
+
+    /**
+     * Moves a child in the cells covered by its current bounds.
+     *
+     * @param component The child, whose bounds changed.
+     */
+    synchronized void update(NComponent component)
+    {
+        Entry entry = entries.get(component);
+
+        if (entry == null || entry.covers(component))
+            return;
+
+        erase(component, entry);
+        insert(component, entry);
+    }
+
+    /**
+     * @param x The X coordinate, relative to the container.
+     * @param y The Y coordinate, relative to the container.
+     *
+     * @return The topmost visible child containing the position, or null.
+     */
+    synchronized NComponent getAt(int x, int y)
+    {
+        NComponent top = null;
+        long topOrder = -1;
+
+        List<NComponent> cell = cells.get(key(x >> CELL_SHIFT, y >> CELL_SHIFT));
+
+        for (int i = 0, n = cell == null ? 0 : cell.size(); i < n + oversized.size(); i++)
+        {
+            NComponent component = i < n ? cell.get(i) : oversized.get(i - n);
+            long componentOrder = entries.get(component).order;
+
+            if (componentOrder > topOrder && contains(component, x, y))
+            {
+                top = component;
+                topOrder = componentOrder;
+            }
+        }
+
+        return top;
+    }
+
+    /**
+     * @return The visible children intersecting the given rectangle, from the
+     *         bottom one to the topmost one.
+     */
+    synchronized List<NComponent> getIn(int x, int y, int width, int height)
+    {
+        List<NComponent> result = new ArrayList<NComponent>();
+
+        if (width <= 0 || height <= 0)
+            return result;
+
+        int x0 = x >> CELL_SHIFT;
+        int y0 = y >> CELL_SHIFT;
+        int x1 = (x + width - 1) >> CELL_SHIFT;
+        int y1 = (y + height - 1) >> CELL_SHIFT;
+
+        Map<NComponent, Boolean> seen = new IdentityHashMap<NComponent, Boolean>();
+
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > entries.size())
+        {
+            // Bigger than the children count : checking them all is faster
+            for (NComponent component : entries.keySet())
+            {
+                if (intersects(component, x, y, width, height))
+                    result.add(component);
+            }
+        }
+        else
+        {
+            for (int cy = y0; cy <= y1; cy++)
+            {
+                for (int cx = x0; cx <= x1; cx++)
+                {
+                    List<NComponent> cell = cells.get(key(cx, cy));
+
+                    if (cell == null)
+                        continue;
+
+                    for (NComponent component : cell)
+                    {
+                        if (seen.put(component, Boolean.TRUE) == null && intersects(component, x, y, width, height))
+                            result.add(component);
+                    }
+                }
+            }
+
+            for (NComponent component : oversized)
+            {
+                if (intersects(component, x, y, width, height))
+                    result.add(component);
+            }
+        }
+
+        Collections.sort(result, order);
+
+        return result;
+    }
+
+    private void insert(NComponent component, Entry entry)
+    {
+        entry.set(component);
+
+        if (entry.isEmpty())
+            return;
+
+        if ((long) (entry.x1 - entry.x0 + 1) * (entry.y1 - entry.y0 + 1) > MAX_CELLS)
+        {
+            entry.oversized = true;
+            oversized.add(component);
+
+            return;
+        }
+
+        for (int cy = entry.y0; cy <= entry.y1; cy++)
+        {
+            for (int cx = entry.x0; cx <= entry.x1; cx++)
+            {
+                Long key = key(cx, cy);
+                List<NComponent> cell = cells.get(key);
+
+                if (cell == null)
+                {
+                    cell = new ArrayList<NComponent>(4);
+                    cells.put(key, cell);
+                }
+
+                cell.add(component);
+            }
+        }
+    }
+
+    private void erase(NComponent component, Entry entry)
+    {
+        if (entry.oversized)
+        {
+            entry.oversized = false;
+            oversized.remove(component);
+
+            return;
+        }
+
+        if (entry.isEmpty())
+            return;
+
+        for (int cy = entry.y0; cy <= entry.y1; cy++)
+        {
+            for (int cx = entry.x0; cx <= entry.x1; cx++)
+            {
+                Long key = key(cx, cy);
+                List<NComponent> cell = cells.get(key);
+
+                if (cell == null)
+                    continue;
+
+                for (int i = cell.size() - 1; i >= 0; i--)
+                {
+                    if (cell.get(i) == component)
+                    {
+                        cell.remove(i);
+                        break;
+                    }
+                }
+
+                if (cell.isEmpty())
+                    cells.remove(key);
+            }
+        }
+    }
+
+    private static Long key(int cx, int cy)
+    {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static boolean contains(NComponent component, int x, int y)
+    {
+        return component.isVisible() && x >= component.getX() && y >= component.getY() && x < component.getX() + component.getWidth() && y < component.getY() + component.getHeight();
+    }
+
+    private static boolean intersects(NComponent component, int x, int y, int width, int height)
+    {
+        return component.isVisible() && component.getWidth() > 0 && component.getHeight() > 0 && x < component.getX() + component.getWidth() && y < component.getY() + component.getHeight() && component.getX() < x + width && component.getY() < y + height;
+    }
+
+    /**
+     * The cells covered by a child, and its order.
+     */
+    private static class Entry
+    {
+        private final long order;
+
+        private int x0;
+        private int y0;
+        private int x1;
+        private int y1;
+
+        /**
+         * {@code true} if the child is in the oversized list.
+         */
+        private boolean oversized;
+
+        Entry(long order)
+        {
+            this.order = order;
+        }
+
+        /**
+         * Computes the cells covered by the current bounds of the child,
+         * x1 &lt; x0 if it is empty.
+         */
+        void set(NComponent component)
+        {
+            if (component.getWidth() <= 0 || component.getHeight() <= 0)
+            {
+                x0 = y0 = 0;
+                x1 = y1 = -1;
+
+                return;
+            }
+
+            x0 = component.getX() >> CELL_SHIFT;
+            y0 = component.getY() >> CELL_SHIFT;
+            x1 = (component.getX() + component.getWidth() - 1) >> CELL_SHIFT;
+            y1 = (component.getY() + component.getHeight() - 1) >> CELL_SHIFT;
+        }
+
+        /**
+         * @return {@code true} if the child still covers the same cells.
+         */
+        boolean covers(NComponent component)
+        {
+            int oldX0 = x0, oldY0 = y0, oldX1 = x1, oldY1 = y1;
+
+            set(component);
+
+            boolean same = oldX0 == x0 && oldY0 == y0 && oldX1 == x1 && oldY1 == y1;
+
+            x0 = oldX0;
+            y0 = oldY0;
+            x1 = oldX1;
+            y1 = oldY1;
+
+            return same;
+        }
+
+        boolean isEmpty()
+        {
+            return x1 < x0;
+        }
+    }
+}
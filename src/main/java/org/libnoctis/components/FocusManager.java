@@ -0,0 +1,317 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.components;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.libnoctis.input.focus.FocusGainedEvent;
+import org.libnoctis.input.focus.FocusLostEvent;
+import org.libnoctis.input.keyboard.Key;
+import org.libnoctis.input.keyboard.KeyPressedEvent;
+import org.libnoctis.input.keyboard.KeyboardEvent;
+
+/**
+ * The Focus Manager
+ *
+ * <p>
+ *     Knows which component of a frame has the focus : the keyboard events
+ *     are only given to it and to its parents, instead of every component.
+ *     A focusable component (see {@link NComponent#setFocusable}) gets the
+ *     focus when it is clicked, or with Tab and Shift+Tab, which go through
+ *     the focusable components in the order of the tree.
+ * </p>
+ *
+ * <p>
+ *     Components receive a {@link FocusGainedEvent} and a
+ *     {@link FocusLostEvent} when their focus changes.
+ * </p>
+ *
+ * @author Litarvan
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class FocusManager
+{
+    /**
+     * The frame whose focus is managed
+     */
+    private final NFrame frame;
+
+    /**
+     * The component receiving the keyboard events, null if none
+     */
+    private NComponent focusOwner;
+
+    /**
+     * If a shift key is pressed, for Shift+Tab
+     */
+    private boolean shiftDown;
+
+    /**
+     * The component that received the Tab press which moved the focus, given
+     * the matching release. Null if the focus wasn't moved by Tab.
+     */
+    private NComponent tabTarget;
+
+    /**
+     * The Focus Manager
+     *
+     * @param frame The frame whose focus is managed
+     */
+    FocusManager(NFrame frame)
+    {
+        this.frame = frame;
+    }
+
+    /**
+     * @return The component receiving the keyboard events, or null if none
+     */
+    public NComponent getFocusOwner()
+    {
+        return focusOwner;
+    }
+
+    /**
+     * Gives the focus to a component.
+     *
+     * @param component The component to focus
+     *
+     * @return If the component has the focus (false if it isn't focusable or
+     *         not in this frame)
+     */
+    public boolean requestFocus(NComponent component)
+    {
+        if (component == focusOwner)
+            return true;
+
+        if (!component.isFocusable() || !isInFrame(component))
+            return false;
+
+        setFocusOwner(component);
+        return true;
+    }
+
+    /**
+     * Removes the focus from the focus owner, the keyboard events are then
+     * only given to the frame.
+     */
+    public void clearFocus()
+    {
+        setFocusOwner(null);
+    }
+
+    /**
+     * Gives the focus to the next focusable component, or the first one if
+     * none has it.
+     *
+     * @return If a component has the focus
+     */
+    public boolean focusNext()
+    {
+        return traverse(true);
+    }
+
+    /**
+     * Gives the focus to the previous focusable component, or the last one if
+     * none has it.
+     *
+     * @return If a component has the focus
+     */
+    public boolean focusPrevious()
+    {
+        return traverse(false);
+    }
+
+    /**
+     * Gives a keyboard event to the capture listeners from the frame to the
+     * focus owner, then to the listeners from the focus owner to the frame,
+     * until {@link org.libnoctis.input.NEvent#stopPropagation()} is called.
+     * Then, if the propagation of a Tab or Shift+Tab press wasn't stopped,
+     * the focus is moved. The release of that Tab is given to the component
+     * which received the press.
+     *
+     * @param event The event
+     */
+    void dispatchKeyEvent(KeyboardEvent event)
+    {
+        Key key = event.getKey();
+        boolean pressed = event instanceof KeyPressedEvent;
+
+        if (key == Key.KEY_LSHIFT || key == Key.KEY_RSHIFT)
+        {
+            shiftDown = pressed;
+        }
+
+        NComponent target = focusOwner == null ? frame : focusOwner;
+
+        if (key == Key.KEY_TAB && !pressed && tabTarget != null)
+        {
+            if (isInFrame(tabTarget))
+                target = tabTarget;
+
+            tabTarget = null;
+        }
+
+        capture(target, event);
+
+        for (NComponent component = target; component != null && !event.isPropagationStopped(); component = component.getParent())
+        {
+            component.handleEvent(event);
+        }
+
+        if (key == Key.KEY_TAB && pressed && !event.isPropagationStopped())
+        {
+            tabTarget = target;
+            traverse(!shiftDown);
+        }
+    }
+
+    /**
+     * Gives the focus to the topmost focusable component of a path, or clears
+     * it if none.
+     *
+     * @param path The components under the mouse, from the frame to the
+     *            topmost one.
+     */
+    void pointerPressed(List<NComponent> path)
+    {
+        for (int i = path.size() - 1; i >= 0; i--)
+        {
+            if (path.get(i).isFocusable())
+            {
+                setFocusOwner(path.get(i));
+                return;
+            }
+        }
+
+        setFocusOwner(null);
+    }
+
+    /**
+     * Clears the focus if the focus owner was in a removed component.
+     *
+     * @param component The component removed from its container
+     */
+    void componentRemoved(NComponent component)
+    {
+        for (NComponent owner = focusOwner; owner != null; owner = owner.getParent())
+        {
+            if (owner == component)
+            {
+                setFocusOwner(null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gives an event to the capture listeners of a component parents, from
+     * the frame, then to the component ones.
+     */
+    private void capture(NComponent component, KeyboardEvent event)
+    {
+        if (component.getParent() != null)
+            capture(component.getParent(), event);
+
+        if (!event.isPropagationStopped())
+            component.handleCaptureEvent(event);
+    }
+
+    /**
+     * Moves the focus to the next or previous focusable component.
+     *
+     * @param forward {@code true} for the next one
+     *
+     * @return If a component has the focus
+     */
+    private boolean traverse(boolean forward)
+    {
+        List<NComponent> cycle = new ArrayList<NComponent>();
+        collectFocusable(frame, cycle);
+
+        if (cycle.isEmpty())
+            return false;
+
+        int index = focusOwner == null ? -1 : cycle.indexOf(focusOwner);
+
+        if (index < 0)
+            index = forward ? 0 : cycle.size() - 1;
+        else
+            index = (index + (forward ? 1 : cycle.size() - 1)) % cycle.size();
+
+        setFocusOwner(cycle.get(index));
+        return true;
+    }
+
+    /**
+     * Adds the focusable components of a tree, depth first.
+     */
+    private static void collectFocusable(NComponent component, List<NComponent> result)
+    {
+        if (!component.isVisible())
+            return;
+
+        if (component.isFocusable())
+            result.add(component);
+
+        if (component instanceof NContainer)
+        {
+            for (NComponent child : ((NContainer) component).getChildren())
+            {
+                collectFocusable(child, result);
+            }
+        }
+    }
+
+    /**
+     * @return If the component is the frame or one of its children
+     */
+    private boolean isInFrame(NComponent component)
+    {
+        for (NComponent parent = component; parent != null; parent = parent.getParent())
+        {
+            if (parent == frame)
+                return true;
+        }
+
+        return false;
+    }
+
+    private void setFocusOwner(NComponent component)
+    {
+        NComponent previous = focusOwner;
+
+        if (component == previous)
+            return;
+
+        focusOwner = component;
+
+        if (previous != null)
+        {
+            previous.handleEvent(new FocusLostEvent());
+            previous.repaint();
+        }
+
+        if (component != null)
+        {
+            component.handleEvent(new FocusGainedEvent());
+            component.repaint();
+        }
+    }
+}
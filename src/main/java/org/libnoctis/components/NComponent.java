@@ -23,6 +23,7 @@ import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.libnoctis.input.EventManager;
 import org.libnoctis.input.NEvent;
 import org.libnoctis.input.NListener;
@@ -33,6 +34,7 @@ import org.libnoctis.ninepatch.NoctisNinePatch;
 import org.libnoctis.ninepatch.NoctisNinePatchCache;
 import org.libnoctis.render.Drawer;
 import org.libnoctis.render.gl.GlTexture;
+import org.libnoctis.theme.AsyncTexture;
 import org.libnoctis.theme.NoctisTheme;
 import org.libnoctis.theme.ThemeProperty;
 import org.libnoctis.theme.ThemeRequireProperty;
@@ -97,6 +99,12 @@ public abstract class NComponent
      */
     private EventManager manager;
 
+    /**
+     * The event manager of the capture listeners, created when the first one
+     * is registered.
+     */
+    private EventManager captureManager;
+
     /**
      * The object properties
      */
@@ -112,6 +120,11 @@ public abstract class NComponent
      */
     private boolean isHovered;
 
+    /**
+     * If this component can receive the keyboard focus
+     */
+    private boolean focusable;
+
     /**
      * This component preferred size
      */
@@ -126,6 +139,41 @@ public abstract class NComponent
 
     private Dimension maximumSize;
 
+    /**
+     * {@code true} if this component needs to be repainted, and its repaint
+     * task is already scheduled.
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * {@code true} if this component was added but its {@link #init()} task
+     * didn't run yet : it isn't rendered until then.
+     */
+    private volatile boolean initPending;
+
+    /**
+     * The task repainting this component, scheduled when it gets dirty.
+     */
+    private final Runnable repaintTask = new Runnable() {
+        @Override
+        public void run()
+        {
+            dirty.set(false);
+
+            Drawer drawer = getDrawer();
+
+            onRepaint();
+
+            // Drawers painting every frame will paint it during the next render pass anyway
+            if (drawer != null && !drawer.shouldPaintEveryFrame())
+            {
+                repaint(drawer);
+            }
+
+            invalidateLayers();
+        }
+    };
+
     /**
      * The Noctis Component
      */
@@ -152,6 +200,63 @@ public abstract class NComponent
         return isHovered;
     }
 
+    /**
+     * @return If this component can receive the keyboard focus
+     */
+    public boolean isFocusable()
+    {
+        return focusable;
+    }
+
+    /**
+     * Defines if this component can receive the keyboard focus, by a click or
+     * with Tab (see {@link FocusManager}).
+     *
+     * @param focusable If this component can be focused
+     */
+    public void setFocusable(boolean focusable)
+    {
+        this.focusable = focusable;
+
+        if (!focusable && isFocused())
+            getFrame().getFocusManager().clearFocus();
+    }
+
+    /**
+     * @return If this component receives the keyboard events of its frame
+     */
+    public boolean isFocused()
+    {
+        NFrame frame = getFrame();
+        return frame != null && frame.getFocusManager().getFocusOwner() == this;
+    }
+
+    /**
+     * Gives the keyboard focus to this component.
+     *
+     * @return If this component has the focus (false if it isn't focusable
+     *         or not in a frame)
+     */
+    public boolean requestFocus()
+    {
+        NFrame frame = getFrame();
+        return frame != null && frame.getFocusManager().requestFocus(this);
+    }
+
+    /**
+     * Changes the hovered state of this component, repainting it if needed.
+     *
+     * @param hovered If the mouse is over this component
+     */
+    void setHovered(boolean hovered)
+    {
+        if (hovered != isHovered)
+        {
+            isHovered = hovered;
+            repaint();
+        }
+    }
+
     public Map<String, Object> getProperties()
     {
         return properties;
@@ -262,7 +367,14 @@ public abstract class NComponent
             texture.setAccessible(true);
             {
                 if (texture.getType() == GlTexture.class)
-                    texture.set(this, ninePatch.generateFor(this.getWidth(), this.getHeight()));
+                {
+                    // Retained while it is used, so it is never evicted or deleted under us
+                    GlTexture old = (GlTexture) texture.get(this);
+                    texture.set(this, ninePatch.generateFor(this.getWidth(), this.getHeight()).retain());
+
+                    if (old != null)
+                        old.release();
+                }
                 else if (texture.getType() == BufferedImage.class)
                     texture.set(this, ninePatch.raw(this.getWidth(), this.getHeight()));
             }
@@ -274,6 +386,39 @@ public abstract class NComponent
         }
     }
 
+    /**
+     * Releases the textures generated for the linked nine patches, so they
+     * can be evicted while this component isn't displayed. They are generated
+     * again if it is added back.
+     */
+    void releasePatches()
+    {
+        for (Field field : linkedPatches.values())
+        {
+            if (field.getType() != GlTexture.class)
+                continue;
+
+            field.setAccessible(true);
+            {
+                try
+                {
+                    GlTexture texture = (GlTexture) field.get(this);
+
+                    if (texture != null)
+                    {
+                        field.set(this, null);
+                        texture.release();
+                    }
+                }
+                catch (IllegalAccessException ignored)
+                {
+                    // Can't happen
+                }
+            }
+            field.setAccessible(false);
+        }
+    }
+
     private void updatePatches()
     {
         for (Entry<Field, Field> entry : linkedPatches.entrySet())
@@ -314,6 +459,44 @@ public abstract class NComponent
         manager.registerListener(listener);
     }
 
+    /**
+     * Register an event listener receiving the events routed to this
+     * component or its children, before them : the keyboard events (see
+     * {@link FocusManager}), and the mouse events if the frame routes them
+     * (see {@link NFrame#setRoutedDispatch}). Not called when the events are
+     * broadcast.
+     *
+     * @param listener The event listener to add
+     */
+    public void registerCaptureListener(NListener listener)
+    {
+        if (captureManager == null)
+            captureManager = new EventManager();
+
+        captureManager.registerListener(listener);
+    }
+
+    /**
+     * Gives an event to the listeners of this component only.
+     *
+     * @param event The event
+     */
+    void handleEvent(NEvent event)
+    {
+        manager.callEvent(event);
+    }
+
+    /**
+     * Gives an event to the capture listeners of this component.
+     *
+     * @param event The event
+     */
+    void handleCaptureEvent(NEvent event)
+    {
+        if (captureManager != null)
+            captureManager.callEvent(event);
+    }
+
     /**
      * Called every frame from the parent frame's render Thread to render this
      * component and its children to the screen.
@@ -322,7 +505,8 @@ public abstract class NComponent
     {
         Drawer drawer = getDrawer();
 
-        if (drawer != null)
+        // Not ready (textures not loaded) when the task budget delayed init
+        if (drawer != null && !initPending)
         {
             if (drawer.shouldPaintEveryFrame())
             {
@@ -337,7 +521,7 @@ public abstract class NComponent
      * Called every frame from the parent frame's render Thread to render this
      * component and its children to the screen.
      */
-    protected final void render(Drawer drawer)
+    protected void render(Drawer drawer)
     {
         renderComponent(drawer);
         renderChildren(drawer);
@@ -386,23 +570,69 @@ public abstract class NComponent
     }
 
     /**
-     * Repaints this component (update it)
+     * Marks this component as dirty, so it is repainted (updated) before the
+     * next render pass. Only this component is repainted, and many calls
+     * during the same frame lead to only one repaint.
      */
     public final void repaint()
     {
         if (getFrame() == null)
             return;
 
-        schedulRenderTask(new Runnable() {
-            @Override
-            public void run()
+        damage();
+
+        if (!dirty.compareAndSet(false, true))
+            return;
+
+        schedulRenderTask(repaintTask);
+    }
+
+    /**
+     * Repaints this component and all its children.
+     */
+    public final void repaintAll()
+    {
+        repaint();
+        repaintChildren();
+    }
+
+    /**
+     * Adds the current bounds of this component to the frame damage, so they
+     * are redrawn during the next render pass.
+     */
+    final void damage()
+    {
+        NFrame frame = getFrame();
+
+        if (frame != null)
+            frame.getDamage().add(getAbsoluteX(), getAbsoluteY(), width, height);
+    }
+
+    /**
+     * Invalidates the cached layers of this component and its parents, so
+     * they are rendered again during the next render pass.
+     */
+    final void invalidateLayers()
+    {
+        NComponent component = this;
+
+        while (component != null)
+        {
+            if (component instanceof NContainer)
             {
-                onRepaint();
-                repaint(getDrawer());
+                ((NContainer) component).invalidateLayer();
             }
-        });
 
-        repaintChildren();
+            component = component.getParent();
+        }
+    }
+
+    /**
+     * @return {@code true} if this component is waiting to be repainted.
+     */
+    public boolean isDirty()
+    {
+        return dirty.get();
     }
 
     /**
@@ -413,7 +643,7 @@ public abstract class NComponent
     }
 
     /**
-     * Called by repaint to repaint children.
+     * Called by repaintAll to repaint children.
      */
     protected void repaintChildren()
     {
@@ -444,6 +674,8 @@ public abstract class NComponent
         
         onComponentAdded(parent);
 
+        initPending = true;
+
         schedulRenderTask(new Runnable() {
             @Override
             public void run()
@@ -461,6 +693,8 @@ public abstract class NComponent
                 }
 
                 init();
+
+                initPending = false;
             }
         });
 
@@ -533,6 +767,10 @@ public abstract class NComponent
                 {
                     field.set(this, theme().requireTexture(value));
                 }
+                else if (field.getType().equals(AsyncTexture.class))
+                {
+                    field.set(this, theme().loadTexture(value, getFrame().getFrameThread()));
+                }
                 else if (field.getType().equals(BufferedImage.class))
                 {
                     field.set(this, theme().requireImage(value));
@@ -567,6 +805,22 @@ public abstract class NComponent
         return x;
     }
 
+    /**
+     * @return The component X position in its frame
+     */
+    public int getAbsoluteX()
+    {
+        return parent == null ? x : x + parent.getAbsoluteX();
+    }
+
+    /**
+     * @return The component Y position in its frame
+     */
+    public int getAbsoluteY()
+    {
+        return parent == null ? y : y + parent.getAbsoluteY();
+    }
+
     /**
      * Set the component X position
      *
@@ -574,7 +828,14 @@ public abstract class NComponent
      */
     public void setX(int x)
     {
+        damage();
+
         this.x = x;
+
+        if (parent != null)
+            parent.childBoundsChanged(this);
+
+        repaint();
     }
 
     /**
@@ -592,7 +853,14 @@ public abstract class NComponent
      */
     public void setY(int y)
     {
+        damage();
+
         this.y = y;
+
+        if (parent != null)
+            parent.childBoundsChanged(this);
+
+        repaint();
     }
 
     /**
@@ -612,8 +880,13 @@ public abstract class NComponent
      */
     public void setWidth(int width)
     {
+        damage();
+
         this.width = width;
 
+        if (parent != null)
+            parent.childBoundsChanged(this);
+
         updatePatches();
         invalidate();
     }
@@ -635,8 +908,13 @@ public abstract class NComponent
      */
     public void setHeight(int height)
     {
+        damage();
+
         this.height = height;
 
+        if (parent != null)
+            parent.childBoundsChanged(this);
+
         updatePatches();
         invalidate();
     }
@@ -803,9 +1081,17 @@ public abstract class NComponent
         @NoctisEvent
         private void move(MouseMoveEvent event)
         {
-            isHovered = event.getPos().getX() > getX() && event.getPos().getX() < getX() + getWidth() &&
+            NFrame frame = getFrame();
+
+            // The frame tracks the hovered components itself
+            if (frame != null && frame.isRoutedDispatch())
+                return;
+
+            boolean hovered = event.getPos().getX() > getX() && event.getPos().getX() < getX() + getWidth() &&
 
                     event.getPos().getY() > getY() && event.getPos().getY() < getY() + getHeight();
+
+            setHovered(hovered);
         }
     }
 
@@ -19,6 +19,7 @@
 package org.libnoctis.components;
 
 import java.awt.Insets;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -27,6 +28,8 @@ import org.jetbrains.annotations.NotNull;
 import org.libnoctis.input.NEvent;
 import org.libnoctis.layout.NLayout;
 import org.libnoctis.render.Drawer;
+import org.libnoctis.render.gl.GlCaps;
+import org.libnoctis.render.gl.RenderLayer;
 
 
 /**
@@ -48,6 +51,12 @@ public abstract class NContainer extends NComponent
      */
     private ArrayList<NComponent> components = new ArrayList<NComponent>();
 
+    /**
+     * A copy of the components the events are dispatched to, so children can
+     * be added or removed by a listener. Null when the components changed.
+     */
+    private NComponent[] dispatchSnapshot;
+
     /**
      * The container layout
      */
@@ -59,6 +68,43 @@ public abstract class NContainer extends NComponent
     @NotNull
     private Insets insets;
 
+    /**
+     * {@code true} if this container subtree is rendered in a layer.
+     */
+    private boolean cached;
+
+    /**
+     * The layer caching this container subtree, created on first render.
+     */
+    private RenderLayer layer;
+
+    /**
+     * {@code false} if the layer needs to be rendered again.
+     */
+    private volatile boolean layerValid;
+
+    /**
+     * The number of children from which they are indexed in a grid.
+     */
+    private static final int GRID_THRESHOLD = 32;
+
+    /**
+     * The spatial index of the children, null while there are only a few.
+     */
+    private ComponentGrid grid;
+
+    /**
+     * How many layouts are running in the current Thread, so only the
+     * outermost one is timed.
+     */
+    private static final ThreadLocal<int[]> layoutDepth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[1];
+        }
+    };
+
     public NContainer()
     {
         super();
@@ -121,15 +167,29 @@ public abstract class NContainer extends NComponent
     public NContainer add(NComponent component) throws RuntimeException
     {
         this.components.add(component);
+        this.dispatchSnapshot = null;
+
+        if (grid != null)
+        {
+            grid.add(component);
+        }
+        else if (components.size() >= GRID_THRESHOLD)
+        {
+            grid = new ComponentGrid();
+
+            for (NComponent child : components)
+            {
+                grid.add(child);
+            }
+        }
 
         component.setParent(this);
 
         if (layout != null)
-            layout.layoutContainer(this);
+            doLayout();
 
         component.onAdded(this);
-
-        repaint();
+        invalidateLayers();
 
         return this;
     }
@@ -154,6 +214,17 @@ public abstract class NContainer extends NComponent
     public NComponent remove(int index)
     {
         NComponent component = components.remove(index);
+        dispatchSnapshot = null;
+
+        if (getFrame() != null)
+            getFrame().getFocusManager().componentRemoved(component);
+
+        if (grid != null)
+            grid.remove(component);
+
+        component.damage();
+        component.releasePatches();
+        invalidateLayers();
         repaint();
 
         return component;
@@ -168,9 +239,38 @@ public abstract class NContainer extends NComponent
     public boolean remove(NComponent component)
     {
         boolean result = components.remove(component);
+
+        if (!result)
+            return false;
+
+        dispatchSnapshot = null;
+
+        if (getFrame() != null)
+            getFrame().getFocusManager().componentRemoved(component);
+
+        if (grid != null)
+            grid.remove(component);
+
+        component.damage();
+        component.releasePatches();
+        invalidateLayers();
         repaint();
 
-        return result;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void releasePatches()
+    {
+        super.releasePatches();
+
+        for (NComponent component : components)
+        {
+            component.releasePatches();
+        }
     }
 
     /**
@@ -180,12 +280,18 @@ public abstract class NContainer extends NComponent
     {
         for (Iterator<NComponent> iterator = components.iterator(); iterator.hasNext();)
         {
-            iterator.next().repaint();
+            iterator.next().repaintAll();
         }
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>
+     * Only the children intersecting the render clip of the frame are
+     * rendered, anything they draw outside of their bounds may then be
+     * missing.
+     * </p>
      */
     @Override
     protected void renderChildren(Drawer drawer)
@@ -193,7 +299,14 @@ public abstract class NContainer extends NComponent
         if (components.size() < 1)
             return;
 
-        NComponent[] comp = components.toArray(new NComponent[components.size()]);
+        NFrame frame = getFrame();
+        Rectangle clip = frame == null ? null : frame.getRenderClip();
+        List<NComponent> comp;
+
+        if (clip == null)
+            comp = new ArrayList<NComponent>(components);
+        else
+            comp = getChildrenIn(clip.x - getAbsoluteX(), clip.y - getAbsoluteY(), clip.width, clip.height);
 
         drawer.pushMatrix();
         {
@@ -207,6 +320,104 @@ public abstract class NContainer extends NComponent
         drawer.popMatrix();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * If this container is cached, its subtree is rendered once into its
+     * layer, which is then drawn as a single quad until a component of the
+     * subtree is repainted, added or removed.
+     * </p>
+     */
+    @Override
+    protected void render(Drawer drawer)
+    {
+        if (!cached || getWidth() <= 0 || getHeight() <= 0 || !GlCaps.isRenderLayerSupported())
+        {
+            super.render(drawer);
+            return;
+        }
+
+        if (layer == null)
+            layer = new RenderLayer();
+
+        if (!layerValid || !layer.isValidFor(getWidth(), getHeight()))
+        {
+            layerValid = true;
+
+            // The layer is kept, so all of this container is rendered in it
+            NFrame frame = getFrame();
+            Rectangle clip = frame == null ? null : frame.getRenderClip();
+
+            if (frame != null)
+                frame.setRenderClip(new Rectangle(getAbsoluteX(), getAbsoluteY(), getWidth(), getHeight()));
+
+            layer.begin(drawer, getWidth(), getHeight());
+            drawer.pushMatrix();
+            {
+                // Cancels the parents translation, so this container is drawn at (0, 0)
+                drawer.translate(-getAbsoluteX(), -getAbsoluteY());
+                super.render(drawer);
+            }
+            drawer.popMatrix();
+            layer.end(drawer);
+
+            if (frame != null)
+                frame.setRenderClip(clip);
+        }
+
+        layer.draw(drawer, getX(), getY());
+    }
+
+    /**
+     * @return {@code true} if this container subtree is cached in a layer.
+     */
+    public boolean isCached()
+    {
+        return cached;
+    }
+
+    /**
+     * Enables or disables the caching of this container subtree. When enabled,
+     * the subtree is rendered into a texture only when one of its components
+     * is repainted, which is faster for big and mostly static containers.
+     * Anything drawn outside of this container bounds is cut.
+     *
+     * <p>
+     * Does nothing if render to texture isn't supported.
+     * </p>
+     *
+     * @param cached {@code true} to cache this container subtree.
+     */
+    public void setCached(final boolean cached)
+    {
+        this.cached = cached;
+        this.layerValid = false;
+
+        if (!cached && getFrame() != null)
+        {
+            schedulRenderTask(new Runnable() {
+                @Override
+                public void run()
+                {
+                    if (!isCached() && layer != null)
+                    {
+                        layer.release();
+                        layer = null;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Marks the layer of this container as outdated, if it's cached.
+     */
+    void invalidateLayer()
+    {
+        layerValid = false;
+    }
+
     /**
      * @return This container layout
      */
@@ -233,18 +444,120 @@ public abstract class NContainer extends NComponent
     {
         if (layout != null)
         {
-            layout.layoutContainer(this);
+            doLayout();
         }
 
         super.invalidate();
     }
 
+    /**
+     * Lays out this container, adding how long it took to the frame metrics.
+     * Only the outermost layout is timed, the layouts of the children it
+     * triggers being part of it.
+     */
+    private void doLayout()
+    {
+        int[] depth = layoutDepth.get();
+        boolean outermost = depth[0]++ == 0;
+        long start = System.nanoTime();
+
+        try
+        {
+            layout.layoutContainer(this);
+        }
+        finally
+        {
+            depth[0]--;
+        }
+
+        NFrame frame = getFrame();
+
+        if (outermost && frame != null)
+            frame.getMetrics().addLayout(System.nanoTime() - start);
+    }
+
+    /**
+     * Finds the topmost child at the given position.
+     *
+     * @param x The X coordinate, relative to this container.
+     * @param y The Y coordinate, relative to this container.
+     *
+     * @return The last added visible child containing the position, or null
+     *         if there is none.
+     */
+    public NComponent getChildAt(int x, int y)
+    {
+        if (grid != null)
+            return grid.getAt(x, y);
+
+        for (int i = components.size() - 1; i >= 0; i--)
+        {
+            NComponent component = components.get(i);
+
+            if (component.isVisible() && x >= component.getX() && y >= component.getY() && x < component.getX() + component.getWidth() && y < component.getY() + component.getHeight())
+            {
+                return component;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the children intersecting a rectangle.
+     *
+     * @param x The X coordinate of the rectangle, relative to this container.
+     * @param y The Y coordinate of the rectangle, relative to this container.
+     * @param width The rectangle width.
+     * @param height The rectangle height.
+     *
+     * @return The visible children intersecting the rectangle, from the first
+     *         added (drawn first) to the last added.
+     */
+    public List<NComponent> getChildrenIn(int x, int y, int width, int height)
+    {
+        if (grid != null)
+            return grid.getIn(x, y, width, height);
+
+        List<NComponent> result = new ArrayList<NComponent>();
+
+        if (width <= 0 || height <= 0)
+            return result;
+
+        for (NComponent component : components)
+        {
+            if (component.isVisible() && component.getWidth() > 0 && component.getHeight() > 0 && x < component.getX() + component.getWidth() && y < component.getY() + component.getHeight() && component.getX() < x + width && component.getY() < y + height)
+            {
+                result.add(component);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Called when the bounds of a child changed, to move it in the grid.
+     *
+     * @param component The child.
+     */
+    void childBoundsChanged(NComponent component)
+    {
+        if (grid != null)
+            grid.update(component);
+    }
+
     @Override
     public void dispatchEvent(NEvent event)
     {
         super.dispatchEvent(event);
 
-        NComponent[] array = components.toArray(new NComponent[components.size()]);
+        NComponent[] array = dispatchSnapshot;
+
+        if (array == null)
+        {
+            array = components.toArray(new NComponent[components.size()]);
+            dispatchSnapshot = array;
+        }
 
         for (NComponent component : array)
         {
@@ -20,20 +20,31 @@ package org.libnoctis.components;
 
 import java.awt.Font;
 import java.awt.FontFormatException;
+import java.awt.Rectangle;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.libnoctis.Libnoctis;
+import org.libnoctis.input.NEvent;
 import org.libnoctis.input.keyboard.Key;
 import org.libnoctis.input.keyboard.KeyPressedEvent;
 import org.libnoctis.input.keyboard.KeyReleasedEvent;
+import org.libnoctis.input.keyboard.KeyboardEvent;
 import org.libnoctis.input.mouse.MouseButton;
 import org.libnoctis.input.mouse.MouseDraggedEvent;
+import org.libnoctis.input.mouse.MouseEnteredEvent;
+import org.libnoctis.input.mouse.MouseEvent;
+import org.libnoctis.input.mouse.MouseExitedEvent;
 import org.libnoctis.input.mouse.MouseMoveEvent;
 import org.libnoctis.input.mouse.MousePressedEvent;
 import org.libnoctis.input.mouse.MouseReleasedEvent;
+import org.libnoctis.render.DamageRegion;
 import org.libnoctis.render.Drawer;
 import org.libnoctis.render.gl.DirectDrawer;
 import org.libnoctis.render.gl.FontCache;
+import org.libnoctis.render.gl.FrameMetrics;
 import org.libnoctis.render.gl.NoctisFrameThread;
 import org.libnoctis.theme.NoctisTheme;
 import org.libnoctis.theme.ThemeLoadingException;
@@ -96,6 +107,64 @@ public class NFrame extends NContainer
      */
     private Drawer drawer;
 
+    /**
+     * The parts of this frame that changed since the last render pass.
+     */
+    private final DamageRegion damage = new DamageRegion();
+
+    /**
+     * {@code true} if only the damaged parts of this frame should be redrawn.
+     */
+    private boolean damageRendering;
+
+    /**
+     * The part of this frame being rendered, null outside of a render pass.
+     */
+    private Rectangle renderClip;
+
+    /**
+     * {@code true} if frames are only rendered when something changed.
+     */
+    private volatile boolean onDemandRendering;
+
+    /**
+     * {@code true} if the mouse events are only given to the components under
+     * the mouse.
+     */
+    private boolean routedDispatch;
+
+    /**
+     * The components under the mouse, from this frame to the topmost one.
+     */
+    private List<NComponent> hoverPath = Collections.emptyList();
+
+    /**
+     * The path the mouse events are given to while a button is pressed, null
+     * if no button is pressed.
+     */
+    private List<NComponent> pointerCapture;
+
+    /**
+     * {@code true} if the mouse samples of a frame are merged into one event.
+     */
+    private boolean motionCoalescing;
+
+    /**
+     * {@code true} if the merged events keep the position of each sample.
+     */
+    private boolean motionHistory;
+
+    /**
+     * {@code true} if the input events are changed and dispatched again
+     * instead of created for each input.
+     */
+    private boolean eventRecycling;
+
+    /**
+     * Knows the component receiving the keyboard events.
+     */
+    private final FocusManager focusManager = new FocusManager(this);
+
     /**
      * Creates a new NFrame.
      *
@@ -205,6 +274,353 @@ public class NFrame extends NContainer
         this.theme = new NoctisTheme(zipTheme);
     }
 
+    /**
+     * @return The parts of this frame that changed since the last render pass.
+     */
+    public DamageRegion getDamage()
+    {
+        return damage;
+    }
+
+    /**
+     * @return The part of this frame being rendered, children outside of it
+     *         are skipped. Null outside of a render pass, everything is then
+     *         rendered.
+     */
+    public Rectangle getRenderClip()
+    {
+        return renderClip;
+    }
+
+    /**
+     * Sets the part of this frame being rendered. Called from the render
+     * Thread around each render pass.
+     *
+     * @param renderClip The rendered part of this frame, or null to render
+     *            everything.
+     */
+    public void setRenderClip(Rectangle renderClip)
+    {
+        this.renderClip = renderClip;
+    }
+
+    /**
+     * @return {@code true} if only the damaged parts of this frame are redrawn.
+     */
+    public boolean isDamageRendering()
+    {
+        return damageRendering;
+    }
+
+    /**
+     * Defines if only the damaged parts of this frame should be redrawn. The
+     * frame content is then kept in a texture, and each frame only the union
+     * of the repainted components bounds is cleared and drawn again. This
+     * needs framebuffer support, the whole frame is redrawn without it.
+     *
+     * <p>
+     * Components must call {@link #repaint()} when their look changes for
+     * this to work.
+     * </p>
+     *
+     * @param damageRendering {@code true} to only redraw the damaged parts.
+     */
+    public void setDamageRendering(boolean damageRendering)
+    {
+        this.damageRendering = damageRendering;
+        this.damage.addAll();
+    }
+
+    /**
+     * @return {@code true} if the mouse events are only given to the
+     *         components under the mouse.
+     */
+    public boolean isRoutedDispatch()
+    {
+        return routedDispatch;
+    }
+
+    /**
+     * Defines how the mouse events are dispatched. By default they are given
+     * to every component, which checks if it is hovered.
+     *
+     * <p>
+     * When routed, the frame finds the components under the mouse once : the
+     * path from this frame to the topmost one. The event is given to the
+     * capture listeners of the path (see
+     * {@link NComponent#registerCaptureListener}), from this frame to the
+     * topmost component, then to the listeners from the topmost component to
+     * this frame, until {@link NEvent#stopPropagation()} is called. While a
+     * button is pressed, the events go to the path where it was pressed.
+     * Components entering or leaving the path receive a
+     * {@link MouseEnteredEvent} or {@link MouseExitedEvent}. Keyboard events
+     * are given to the focused component (see {@link FocusManager}).
+     * </p>
+     *
+     * @param routedDispatch {@code true} to route the mouse events.
+     */
+    public void setRoutedDispatch(boolean routedDispatch)
+    {
+        this.routedDispatch = routedDispatch;
+    }
+
+    /**
+     * @return {@code true} if the input events are recycled after dispatch.
+     */
+    public boolean isEventRecycling()
+    {
+        return eventRecycling;
+    }
+
+    /**
+     * Defines if the input events are recycled. By default, each mouse
+     * sample and key creates a new event.
+     *
+     * <p>
+     * When recycled, the frame keeps one event of each type and changes it
+     * for each input, so fast mouse movements don't create garbage. An
+     * event is then only valid while it is dispatched : listeners keeping
+     * one (or its positions) must keep a {@link NEvent#copy()}.
+     * </p>
+     *
+     * @param eventRecycling {@code true} to recycle the events.
+     */
+    public void setEventRecycling(boolean eventRecycling)
+    {
+        this.eventRecycling = eventRecycling;
+    }
+
+    /**
+     * @return {@code true} if the mouse samples of a frame are merged into
+     *         one event.
+     */
+    public boolean isMotionCoalescing()
+    {
+        return motionCoalescing;
+    }
+
+    /**
+     * Defines if the mouse movements are coalesced. By default, one
+     * {@link MouseMoveEvent} or {@link MouseDraggedEvent} is dispatched per
+     * mouse sample, so a fast mouse can dispatch dozens of them per frame.
+     *
+     * <p>
+     * When coalesced, the consecutive samples of a frame are merged into one
+     * event, at the last position, with the movement of all the samples. A
+     * button press or release still dispatches the pending movement first,
+     * so the events stay in order.
+     * </p>
+     *
+     * @param motionCoalescing {@code true} to merge the mouse samples.
+     */
+    public void setMotionCoalescing(boolean motionCoalescing)
+    {
+        this.motionCoalescing = motionCoalescing;
+    }
+
+    /**
+     * @return {@code true} if the merged mouse events keep the position of
+     *         each sample.
+     */
+    public boolean isMotionHistory()
+    {
+        return motionHistory;
+    }
+
+    /**
+     * Defines if the coalesced mouse events keep the position of each merged
+     * sample, given by {@link MouseMoveEvent#getSamples()} (for drawing
+     * components needing every point, for example).
+     *
+     * @param motionHistory {@code true} to keep the samples.
+     */
+    public void setMotionHistory(boolean motionHistory)
+    {
+        this.motionHistory = motionHistory;
+    }
+
+    /**
+     * @return The manager of the component receiving the keyboard events.
+     */
+    public FocusManager getFocusManager()
+    {
+        return focusManager;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Keyboard events are given to the focused component and its parents
+     * (see {@link FocusManager}). Mouse presses give the focus to the
+     * focusable component under the mouse.
+     * </p>
+     */
+    @Override
+    public void dispatchEvent(NEvent event)
+    {
+        if (event instanceof KeyboardEvent)
+        {
+            focusManager.dispatchKeyEvent((KeyboardEvent) event);
+            return;
+        }
+
+        List<NComponent> path = null;
+
+        if (event instanceof MousePressedEvent)
+        {
+            Vector2i pos = ((MousePressedEvent) event).getPos();
+            path = getPathAt(pos.getX(), pos.getY());
+
+            focusManager.pointerPressed(path);
+        }
+
+        if (!routedDispatch || !(event instanceof MouseEvent))
+        {
+            super.dispatchEvent(event);
+            return;
+        }
+
+        Vector2i pos = ((MouseEvent) event).getPos();
+
+        if (path == null)
+            path = getPathAt(pos.getX(), pos.getY());
+
+        updateHover(path, pos);
+
+        if (pointerCapture != null)
+        {
+            path = pointerCapture;
+        }
+        else if (event instanceof MousePressedEvent)
+        {
+            pointerCapture = path;
+        }
+
+        if (event instanceof MouseReleasedEvent)
+        {
+            pointerCapture = null;
+        }
+
+        // Capture phase, from this frame to the target
+        for (int i = 0; i < path.size() && !event.isPropagationStopped(); i++)
+        {
+            path.get(i).handleCaptureEvent(event);
+        }
+
+        // Bubble phase, from the target to this frame
+        for (int i = path.size() - 1; i >= 0 && !event.isPropagationStopped(); i--)
+        {
+            path.get(i).handleEvent(event);
+        }
+    }
+
+    /**
+     * @param x The X coordinate, relative to this frame.
+     * @param y The Y coordinate, relative to this frame.
+     *
+     * @return The components at the given position, from this frame to the
+     *         topmost one.
+     */
+    private List<NComponent> getPathAt(int x, int y)
+    {
+        List<NComponent> path = new ArrayList<NComponent>();
+        path.add(this);
+
+        NContainer container = this;
+
+        // Children coordinates are relative to their parent
+        x -= getX();
+        y -= getY();
+
+        while (true)
+        {
+            NComponent child = container.getChildAt(x, y);
+
+            if (child == null)
+                break;
+
+            path.add(child);
+
+            if (!(child instanceof NContainer))
+                break;
+
+            x -= child.getX();
+            y -= child.getY();
+            container = (NContainer) child;
+        }
+
+        return path;
+    }
+
+    /**
+     * Updates the hovered components, sending them entered and exited events.
+     *
+     * @param path The new components under the mouse.
+     * @param pos The mouse position.
+     */
+    private void updateHover(List<NComponent> path, Vector2i pos)
+    {
+        for (int i = hoverPath.size() - 1; i >= 0; i--)
+        {
+            NComponent component = hoverPath.get(i);
+
+            if (!path.contains(component))
+            {
+                component.setHovered(false);
+                component.handleEvent(new MouseExitedEvent(new Vector2i(pos.getX(), pos.getY())));
+            }
+        }
+
+        for (NComponent component : path)
+        {
+            if (!hoverPath.contains(component))
+            {
+                component.setHovered(true);
+                component.handleEvent(new MouseEnteredEvent(new Vector2i(pos.getX(), pos.getY())));
+            }
+        }
+
+        hoverPath = path;
+    }
+
+    /**
+     * @return The durations of the phases of the frames rendered by this
+     *         frame Thread, readable from any Thread.
+     */
+    public FrameMetrics getMetrics()
+    {
+        return frameThread.getMetrics();
+    }
+
+    /**
+     * @return {@code true} if frames are only rendered when something changed.
+     */
+    public boolean isOnDemandRendering()
+    {
+        return onDemandRendering;
+    }
+
+    /**
+     * Defines if frames should only be rendered when something changed : input
+     * arrived, a task was run on the frame Thread (which includes repaints) or
+     * an animation is running (see {@link NoctisFrameThread#startAnimation()}).
+     * The frame Thread sleeps the rest of the time instead of rendering
+     * {@link #getFPS()} frames per second.
+     *
+     * <p>
+     * Components changing their look without calling {@link #repaint()} must
+     * call {@link NoctisFrameThread#requestRender()}.
+     * </p>
+     *
+     * @param onDemandRendering {@code true} to only render frames when needed.
+     */
+    public void setOnDemandRendering(boolean onDemandRendering)
+    {
+        this.onDemandRendering = onDemandRendering;
+        this.frameThread.requestRender();
+    }
+
     /**
      * Checks if is resizable.
      *
@@ -324,10 +740,12 @@ public class NFrame extends NContainer
 
     /**
      * Called from render Thread to listen to user input.
+     *
+     * @return {@code true} if at least one input event was handled.
      */
-    public final void input()
+    public final boolean input()
     {
-        lwjglInput();
+        return lwjglInput();
     }
 
     public int getFPS()
@@ -336,17 +754,25 @@ public class NFrame extends NContainer
     }
 
     // --- LWJGL implement ---
-    private void lwjglInput()
+    private boolean lwjglInput()
     {
+        boolean handled = false;
+
         while (Mouse.next())
         {
             lwjglMouseInput();
+            handled = true;
         }
 
+        flushMotion();
+
         while (Keyboard.next())
         {
             lwjglKeyboardInput();
+            handled = true;
         }
+
+        return handled;
     }
 
     private int lastClickMoveHandledX;
@@ -356,40 +782,68 @@ public class NFrame extends NContainer
 
     private MouseButton eventButton;
 
-    private Key eventKey;
-    private long lastPressTime = 0;
+    /**
+     * When each pressed key was pressed, by key code, 0 if it isn't pressed.
+     */
+    private final long[] keyPressTimes = new long[Keyboard.KEYBOARD_SIZE];
+
+    private boolean pendingMotion;
+    private boolean pendingDrag;
+    private int pendingX;
+    private int pendingY;
+    private int pendingMotionX;
+    private int pendingMotionY;
+    private int pendingClickX;
+    private int pendingClickY;
+    private List<Vector2i> pendingSamples;
+
+    private KeyPressedEvent keyPressedEvent;
+    private KeyReleasedEvent keyReleasedEvent;
+    private MousePressedEvent mousePressedEvent;
+    private MouseReleasedEvent mouseReleasedEvent;
+    private MouseMoveEvent mouseMoveEvent;
+    private MouseDraggedEvent mouseDraggedEvent;
 
     private void lwjglKeyboardInput()
     {
-        Key key = Key.byCode(Keyboard.getEventKey());
+        int code = Keyboard.getEventKey();
+
+        if (code < 0 || code >= keyPressTimes.length)
+            return;
+
+        Key key = Key.byCode(code);
 
         if (Keyboard.getEventKeyState())
         {
-            dispatchEvent(new KeyPressedEvent(key));
+            dispatchEvent(keyPressed(key));
 
-            lastPressTime = System.currentTimeMillis();
-            eventKey = key;
+            if (keyPressTimes[code] == 0)
+                keyPressTimes[code] = System.currentTimeMillis();
         }
-        else if (eventKey != null)
+        else if (keyPressTimes[code] != 0)
         {
-            dispatchEvent(new KeyReleasedEvent(key, System.currentTimeMillis() - lastPressTime));
+            // Every pressed key is released, not only the last one
+            dispatchEvent(keyReleased(key, System.currentTimeMillis() - keyPressTimes[code]));
 
-            lastPressTime = 0;
-            eventKey = null;
+            keyPressTimes[code] = 0;
         }
     }
 
     private void lwjglMouseInput()
     {
-        Vector2i mousePos = new Vector2i(Mouse.getX(), getHeight() - Mouse.getY() - 1);
-        Vector2i mouseDynamicPos = new Vector2i(Mouse.getDX(), -Mouse.getDY());
+        int x = Mouse.getX();
+        int y = getHeight() - Mouse.getY() - 1;
+        int motionX = Mouse.getDX();
+        int motionY = -Mouse.getDY();
         MouseButton button = MouseButton.byId(Mouse.getEventButton());
 
         if (Mouse.getEventButtonState())
         {
-            lastClickMoveHandledX = mousePos.getX();
-            lastClickMoveHandledY = mousePos.getY();
-            dispatchEvent(new MousePressedEvent(mousePos, button));
+            flushMotion();
+
+            lastClickMoveHandledX = x;
+            lastClickMoveHandledY = y;
+            dispatchEvent(mousePressed(x, y, button));
             lastMouseClickTime = System.currentTimeMillis();
             eventButton = button;
         }
@@ -397,23 +851,168 @@ public class NFrame extends NContainer
         {
             if (button != null)
             {
-                dispatchEvent(new MouseReleasedEvent(mousePos, button));
+                flushMotion();
+                dispatchEvent(mouseReleased(x, y, button));
                 eventButton = null;
                 lastMouseClickTime = System.currentTimeMillis();
             }
             else if (eventButton != null && lastMouseClickTime > 0L)
             {
-                dispatchEvent(new MouseDraggedEvent(mousePos, button, mouseDynamicPos, new Vector2i(lastClickMoveHandledX, lastClickMoveHandledY), System.currentTimeMillis() - lastMouseClickTime));
-                lastClickMoveHandledX = mousePos.getX();
-                lastClickMoveHandledY = mousePos.getY();
+                if (motionCoalescing)
+                {
+                    coalesceMotion(true, x, y, motionX, motionY);
+                }
+                else
+                {
+                    dispatchEvent(mouseDragged(x, y, button, motionX, motionY, lastClickMoveHandledX, lastClickMoveHandledY, null));
+                }
+
+                lastClickMoveHandledX = x;
+                lastClickMoveHandledY = y;
+            }
+            else if (motionCoalescing)
+            {
+                coalesceMotion(false, x, y, motionX, motionY);
             }
             else
             {
-                dispatchEvent(new MouseMoveEvent(mousePos, mouseDynamicPos));
+                dispatchEvent(mouseMoved(x, y, motionX, motionY, null));
             }
         }
     }
 
+    /**
+     * Merges a mouse sample into the pending movement, dispatching it first
+     * if it isn't the same kind of movement.
+     *
+     * @param drag {@code true} if the sample is a drag.
+     * @param x The mouse X position.
+     * @param y The mouse Y position.
+     * @param motionX The horizontal mouse movement.
+     * @param motionY The vertical mouse movement.
+     */
+    private void coalesceMotion(boolean drag, int x, int y, int motionX, int motionY)
+    {
+        if (pendingMotion && pendingDrag != drag)
+        {
+            flushMotion();
+        }
+
+        if (!pendingMotion)
+        {
+            pendingMotion = true;
+            pendingDrag = drag;
+            pendingMotionX = 0;
+            pendingMotionY = 0;
+            pendingClickX = lastClickMoveHandledX;
+            pendingClickY = lastClickMoveHandledY;
+            pendingSamples = motionHistory ? new ArrayList<Vector2i>() : null;
+        }
+
+        pendingX = x;
+        pendingY = y;
+        pendingMotionX += motionX;
+        pendingMotionY += motionY;
+
+        if (pendingSamples != null)
+        {
+            pendingSamples.add(new Vector2i(x, y));
+        }
+    }
+
+    /**
+     * Dispatches the pending merged movement, if any.
+     */
+    private void flushMotion()
+    {
+        if (!pendingMotion)
+        {
+            return;
+        }
+
+        pendingMotion = false;
+
+        List<Vector2i> samples = pendingSamples;
+        pendingSamples = null;
+
+        if (pendingDrag)
+        {
+            dispatchEvent(mouseDragged(pendingX, pendingY, null, pendingMotionX, pendingMotionY, pendingClickX, pendingClickY, samples));
+        }
+        else
+        {
+            dispatchEvent(mouseMoved(pendingX, pendingY, pendingMotionX, pendingMotionY, samples));
+        }
+    }
+
+    private KeyPressedEvent keyPressed(Key key)
+    {
+        if (!eventRecycling)
+            return new KeyPressedEvent(key);
+
+        if (keyPressedEvent == null)
+            keyPressedEvent = new KeyPressedEvent(key);
+
+        return keyPressedEvent.set(key);
+    }
+
+    private KeyReleasedEvent keyReleased(Key key, long pressTime)
+    {
+        if (!eventRecycling)
+            return new KeyReleasedEvent(key, pressTime);
+
+        if (keyReleasedEvent == null)
+            keyReleasedEvent = new KeyReleasedEvent(key, pressTime);
+
+        return keyReleasedEvent.set(key, pressTime);
+    }
+
+    private MousePressedEvent mousePressed(int x, int y, MouseButton button)
+    {
+        if (!eventRecycling)
+            return new MousePressedEvent(new Vector2i(x, y), button);
+
+        if (mousePressedEvent == null)
+            mousePressedEvent = new MousePressedEvent(new Vector2i(), button);
+
+        return mousePressedEvent.set(x, y, button);
+    }
+
+    private MouseReleasedEvent mouseReleased(int x, int y, MouseButton button)
+    {
+        if (!eventRecycling)
+            return new MouseReleasedEvent(new Vector2i(x, y), button);
+
+        if (mouseReleasedEvent == null)
+            mouseReleasedEvent = new MouseReleasedEvent(new Vector2i(), button);
+
+        return mouseReleasedEvent.set(x, y, button);
+    }
+
+    private MouseMoveEvent mouseMoved(int x, int y, int motionX, int motionY, List<Vector2i> samples)
+    {
+        if (!eventRecycling)
+            return new MouseMoveEvent(new Vector2i(x, y), new Vector2i(motionX, motionY), samples);
+
+        if (mouseMoveEvent == null)
+            mouseMoveEvent = new MouseMoveEvent(new Vector2i(), new Vector2i());
+
+        return mouseMoveEvent.set(x, y, motionX, motionY, samples);
+    }
+
+    private MouseDraggedEvent mouseDragged(int x, int y, MouseButton button, int motionX, int motionY, int clickX, int clickY, List<Vector2i> samples)
+    {
+        long timeSinceClick = System.currentTimeMillis() - lastMouseClickTime;
+
+        if (!eventRecycling)
+            return new MouseDraggedEvent(new Vector2i(x, y), button, new Vector2i(motionX, motionY), new Vector2i(clickX, clickY), timeSinceClick, samples);
+
+        if (mouseDraggedEvent == null)
+            mouseDraggedEvent = new MouseDraggedEvent(new Vector2i(), button, new Vector2i(), new Vector2i(), timeSinceClick);
+
+        return mouseDraggedEvent.set(x, y, button, motionX, motionY, clickX, clickY, timeSinceClick, samples);
+    }
+
     private void displayUpdateTitle()
     {
         Display.setTitle(title);
@@ -461,5 +1060,7 @@ public class NFrame extends NContainer
         glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
         setWidth(width);
         setHeight(height);
+
+        damage.addAll();
     }
 }
@@ -19,8 +19,11 @@
 package org.libnoctis.components.base;
 
 import org.libnoctis.components.NComponent;
+import org.libnoctis.render.Color;
 import org.libnoctis.render.Drawer;
 import org.libnoctis.render.gl.GlTexture;
+import org.libnoctis.theme.AsyncTexture;
+import org.libnoctis.theme.ThemeRequiredException;
 
 /**
  * The Noctis Image
@@ -38,6 +41,22 @@ public class NImage extends NComponent
     private String    textureProperty;
     private GlTexture texture;
 
+    /**
+     * The texture being loaded, drawn once it is loaded.
+     */
+    private AsyncTexture pending;
+
+    /**
+     * The color of the rectangle drawn while the texture is loading, or null
+     * to draw nothing.
+     */
+    private Color placeholder;
+
+    /**
+     * The error that happened while loading the last texture, if any.
+     */
+    private ThemeRequiredException error;
+
     public NImage(String property)
     {
         this.textureProperty = property;
@@ -54,7 +73,7 @@ public class NImage extends NComponent
         super.init();
 
         if (textureProperty != null)
-            texture = theme().requireTexture(theme().requireProp(textureProperty));
+            loadTexture(textureProperty);
     }
 
     @Override
@@ -62,21 +81,123 @@ public class NImage extends NComponent
     {
         super.paintComponent(drawer);
 
-        drawer.drawTexture(this.getX(), this.getY(), this.getWidth(), this.getHeight(), texture);
+        if (texture != null)
+        {
+            drawer.drawTexture(this.getX(), this.getY(), this.getWidth(), this.getHeight(), texture);
+        }
+        else if (placeholder != null)
+        {
+            Color color = drawer.getColor();
+
+            drawer.setColor(placeholder);
+            drawer.fillRect(this.getX(), this.getY(), this.getWidth(), this.getHeight());
+            drawer.setColor(color);
+        }
     }
 
+    /**
+     * Sets the texture of this image from the given theme property, loading
+     * it now.
+     *
+     * @param property The theme property containing the texture path.
+     */
     public void setTexture(String property)
     {
         setTexture(theme().requireTexture(theme().requireProp(property)));
     }
 
+    /**
+     * Sets the texture of this image from the given theme property. The
+     * texture is loaded in background, the placeholder is drawn meanwhile.
+     *
+     * @param property The theme property containing the texture path.
+     */
+    public void loadTexture(String property)
+    {
+        setTexture(theme().loadTexture(theme().requireProp(property), getFrame().getFrameThread()));
+    }
+
+    /**
+     * Sets the texture of this image once the given texture is loaded, the
+     * placeholder is drawn meanwhile. If it fails to load, the placeholder
+     * stays and the error is given by {@link #getError()}.
+     *
+     * @param texture The texture being loaded.
+     */
+    public void setTexture(final AsyncTexture texture)
+    {
+        this.pending = texture;
+        this.texture = texture.getTexture();
+        this.error = null;
+
+        texture.whenDone(new Runnable() {
+            @Override
+            public void run()
+            {
+                if (pending != texture)
+                    return;
+
+                pending = null;
+
+                if (texture.getError() != null)
+                {
+                    error = texture.getError();
+                    error.printStackTrace();
+
+                    return;
+                }
+
+                NImage.this.texture = texture.getTexture();
+                repaint();
+            }
+        });
+    }
+
     public void setTexture(GlTexture texture)
     {
+        this.pending = null;
         this.texture = texture;
+        this.error = null;
     }
 
     public GlTexture getTexture()
     {
         return texture;
     }
+
+    /**
+     * @return {@code true} if the texture of this image is being loaded.
+     */
+    public boolean isLoading()
+    {
+        return pending != null;
+    }
+
+    /**
+     * @return The error that happened while loading the texture, or null if
+     *         it didn't fail.
+     */
+    public ThemeRequiredException getError()
+    {
+        return error;
+    }
+
+    /**
+     * @return The color of the rectangle drawn while the texture is loading,
+     *         or null if nothing is drawn.
+     */
+    public Color getPlaceholder()
+    {
+        return placeholder;
+    }
+
+    /**
+     * Sets the color of the rectangle drawn while the texture is loading.
+     *
+     * @param placeholder The placeholder color, or null to draw nothing.
+     */
+    public void setPlaceholder(Color placeholder)
+    {
+        this.placeholder = placeholder;
+    }
 }
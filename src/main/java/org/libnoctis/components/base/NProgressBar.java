@@ -186,7 +186,12 @@ public class NProgressBar extends NComponent
             return;
 
         if (dimensions.getX() != 0)
+        {
+            if (this.lastGeneratedTexture != null)
+                this.lastGeneratedTexture.release();
+
             this.lastGeneratedTexture = new GlTexture(filledTexture.getSubimage(0, 0, dimensions.getX(), dimensions.getY()));
+        }
         this.lastGeneratedDimensions = dimensions;
     }
 
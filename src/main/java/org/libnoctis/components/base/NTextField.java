@@ -28,7 +28,6 @@ import org.libnoctis.input.NoctisEvent;
 import org.libnoctis.input.keyboard.Key;
 import org.libnoctis.input.keyboard.KeyPressedEvent;
 import org.libnoctis.input.keyboard.KeyReleasedEvent;
-import org.libnoctis.input.mouse.MousePressedEvent;
 import org.libnoctis.ninepatch.LinkedNinePatch;
 import org.libnoctis.ninepatch.NoctisNinePatch;
 import org.libnoctis.render.Drawer;
@@ -119,11 +118,6 @@ public class NTextField extends NComponent
      */
     private Vector2i textPadding;
 
-    /**
-     * If the user is typing in the text field
-     */
-    private boolean focus = false;
-    
     /**
      * The theme property containing the path of the background texture
      */
@@ -182,6 +176,7 @@ public class NTextField extends NComponent
         this.backgroundTexturePath = backgroundTexturePath;
         this.focusedTexturePath = focusedTexturePath;
         this.disabledTexturePath = disabledTexturePath;
+        setFocusable(true);
         setPreferredSize(new Dimension(200, 18));
         setMinimumSize(new Dimension(200, 18));
     }
@@ -209,10 +204,10 @@ public class NTextField extends NComponent
         super.paintComponent(drawer);
 
         // Drawing background (or focused background)
-        drawer.drawTexture(getX(), getY(), this.getWidth(), this.getHeight(), focus && focusBackground != null ? focusBackground : background);
+        drawer.drawTexture(getX(), getY(), this.getWidth(), this.getHeight(), isFocused() && focusBackground != null ? focusBackground : background);
 
         // Drawing the text
-        drawer.drawString(this.getText() + /* The caret */ (focus ? "_" : ""), getX() + this.textPadding.getX(), getY() + this.textPadding.getY());
+        drawer.drawString(this.getText() + /* The caret */ (isFocused() ? "_" : ""), getX() + this.textPadding.getX(), getY() + this.textPadding.getY());
     }
 
     /**
@@ -303,20 +298,12 @@ public class NTextField extends NComponent
         return textPadding;
     }
 
-    /**
-     * @return If the user is typing in the text field
-     */
-    public boolean isFocused()
-    {
-        return focus;
-    }
-
     private class NTextFieldListener implements NListener
     {
         @NoctisEvent
         private void keyPress(KeyPressedEvent event)
         {
-            if (!focus)
+            if (!isFocused())
                 return;
 
             if (event.getKey().isCharacter())
@@ -348,13 +335,6 @@ public class NTextField extends NComponent
                 capsLock = !capsLock;
         }
 
-        @NoctisEvent
-        private void mousePress(MousePressedEvent event)
-        {
-            focus = isHovered();
-            invalidate();
-        }
-
         @NoctisEvent
         private void keyRelease(KeyReleasedEvent event)
         {
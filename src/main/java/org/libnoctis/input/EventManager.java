@@ -18,10 +18,11 @@
  */
 package org.libnoctis.input;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Event Manager
@@ -30,12 +31,23 @@ import java.util.ArrayList;
  *     The Event Manager can manage, check, and launch some events of classes.
  * </p>
  *
+ * <p>
+ *     The event methods of a listener class are found once, and the methods
+ *     receiving an event class are then kept, so launching an event doesn't
+ *     scan the listener methods again.
+ * </p>
+ *
  * @author Litarvan
  * @version 0.1.0
  * @since 0.0.1
  */
 public class EventManager
 {
+    /**
+     * The event methods of the listener classes, by listener class
+     */
+    private static final ConcurrentHashMap<Class<?>, ListenerType> TYPES = new ConcurrentHashMap<Class<?>, ListenerType>();
+
     /**
      * The list of the listeners
      */
@@ -50,9 +62,9 @@ public class EventManager
     {
         try
         {
-            for (NListener listener : listeners)
+            for (int i = 0; i < listeners.size(); i++)
             {
-                launchEvent(listener, event);
+                launchEvent(listeners.get(i), event);
             }
         }
         catch (Throwable throwable)
@@ -82,32 +94,113 @@ public class EventManager
      */
     private void launchEvent(NListener listener, NEvent event) throws Throwable
     {
-        Method[] methods = listener.getClass().getDeclaredMethods();
+        Method[] methods = typeOf(listener.getClass()).getMethods(event);
 
         for (Method method : methods)
         {
-            if (method.getParameterTypes().length != 1)
-                return;
+            try
+            {
+                method.invoke(listener, event);
+            }
+            catch (IllegalAccessException ignored)
+            {
+                // Can't happen
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+    /**
+     * @param listenerClass A listener class.
+     *
+     * @return Its event methods, found on first call.
+     */
+    private static ListenerType typeOf(Class<?> listenerClass)
+    {
+        ListenerType type = TYPES.get(listenerClass);
 
-            Annotation[] annotations = method.getDeclaredAnnotations();
-            for (Annotation annotation : annotations)
-                if (annotation.annotationType().equals(NoctisEvent.class) && (method.getParameterTypes()[0].equals(event.getClass()) || (event.shouldPassForSuperclassEvent() && method.getParameterTypes()[0].isInstance(event))))
+        if (type == null)
+        {
+            type = new ListenerType(listenerClass);
+
+            ListenerType previous = TYPES.putIfAbsent(listenerClass, type);
+
+            if (previous != null)
+                type = previous;
+        }
+
+        return type;
+    }
+
+    /**
+     * The event methods of a listener class.
+     */
+    private static class ListenerType
+    {
+        private static final Method[] NONE = new Method[0];
+
+        /**
+         * The methods annotated with {@link NoctisEvent}, taking one
+         * parameter, already made accessible.
+         */
+        private final Method[] methods;
+
+        /**
+         * The methods receiving an event class : the ones taking exactly this
+         * class first, then the ones also taking its superclasses.
+         */
+        private final ConcurrentHashMap<Class<?>, Method[][]> byEvent = new ConcurrentHashMap<Class<?>, Method[][]>();
+
+        ListenerType(Class<?> listenerClass)
+        {
+            List<Method> found = new ArrayList<Method>();
+
+            for (Method method : listenerClass.getDeclaredMethods())
+            {
+                if (method.isSynthetic() || method.getParameterTypes().length != 1 || !method.isAnnotationPresent(NoctisEvent.class))
+                    continue;
+
+                method.setAccessible(true);
+                found.add(method);
+            }
+
+            methods = found.toArray(new Method[found.size()]);
+        }
+
+        /**
+         * @param event An event.
+         *
+         * @return The methods to call with this event.
+         */
+        Method[] getMethods(NEvent event)
+        {
+            Class<?> eventClass = event.getClass();
+            Method[][] resolved = byEvent.get(eventClass);
+
+            if (resolved == null)
+            {
+                List<Method> exact = new ArrayList<Method>();
+                List<Method> all = new ArrayList<Method>();
+
+                for (Method method : methods)
                 {
-                    method.setAccessible(true);
-
-                    try
-                    {
-                        method.invoke(listener, event);
-                    }
-                    catch (IllegalAccessException ignored)
-                    {
-                        // Can't happen
-                    }
-                    catch (InvocationTargetException e)
-                    {
-                        throw e.getTargetException();
-                    }
+                    Class<?> parameter = method.getParameterTypes()[0];
+
+                    if (parameter.equals(eventClass))
+                        exact.add(method);
+
+                    if (parameter.isAssignableFrom(eventClass))
+                        all.add(method);
                 }
+
+                resolved = new Method[][] {exact.isEmpty() ? NONE : exact.toArray(new Method[exact.size()]), all.isEmpty() ? NONE : all.toArray(new Method[all.size()])};
+                byEvent.put(eventClass, resolved);
+            }
+
+            return event.shouldPassForSuperclassEvent() ? resolved[1] : resolved[0];
         }
     }
 }
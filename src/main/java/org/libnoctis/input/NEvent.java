@@ -25,6 +25,13 @@ package org.libnoctis.input;
  *     An event of Libnoctis
  * </p>
  *
+ * <p>
+ *     If its frame recycles the input events (see
+ *     {@link org.libnoctis.components.NFrame#setEventRecycling}), an event
+ *     is only valid while it is dispatched : a listener keeping it must keep
+ *     a {@link #copy()}.
+ * </p>
+ *
  * @see EventManager
  * @see NoctisEvent
  *
@@ -34,6 +41,48 @@ package org.libnoctis.input;
  */
 public abstract class NEvent
 {
+    /**
+     * {@code true} if this event shouldn't be given to the next components
+     */
+    private boolean propagationStopped;
+
+    /**
+     * Stops this event from being given to the next components of its path,
+     * when the frame routes the events (see
+     * {@link org.libnoctis.components.NFrame#setRoutedDispatch}). The other
+     * listeners of the current component still receive it.
+     */
+    public void stopPropagation()
+    {
+        propagationStopped = true;
+    }
+
+    /**
+     * @return If {@link #stopPropagation()} was called
+     */
+    public boolean isPropagationStopped()
+    {
+        return propagationStopped;
+    }
+
+    /**
+     * Prepares this event to be dispatched again, once its values were
+     * changed.
+     */
+    protected void reuse()
+    {
+        propagationStopped = false;
+    }
+
+    /**
+     * @return A copy of this event that won't be changed by the frame, or
+     *         this event if it is never recycled
+     */
+    public NEvent copy()
+    {
+        return this;
+    }
+
     /**
      * @return If the event should be passed to the superclasses of
      *         this current event
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.input.focus;
+
+import org.libnoctis.input.NEvent;
+
+/**
+ * The Focus Lost Event
+ *
+ * <p>
+ *     An event given to a component when it isn't the focus owner of its
+ *     frame anymore.
+ * </p>
+ *
+ * @see org.libnoctis.components.FocusManager
+ *
+ * @author Litarvan
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class FocusLostEvent extends NEvent
+{
+}
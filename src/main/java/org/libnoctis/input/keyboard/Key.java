@@ -271,10 +271,28 @@ public enum Key
     @NotNull
     public static Key byCode(int code)
     {
+        if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null)
+            return KEY_NONE;
+
+        return BY_CODE[code];
+    }
+
+    /**
+     * The keys, indexed by their code
+     */
+    private static final Key[] BY_CODE;
+
+    static
+    {
+        int max = 0;
+
         for (Key key : values())
-            if (key.getCode() == code)
-                return key;
+            max = Math.max(max, key.getCode());
 
-        return KEY_NONE;
+        BY_CODE = new Key[max + 1];
+
+        for (Key key : values())
+            if (BY_CODE[key.getCode()] == null)
+                BY_CODE[key.getCode()] = key;
     }
 }
@@ -38,4 +38,23 @@ public class KeyPressedEvent extends KeyboardEvent
     {
         super(key);
     }
+
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param key The key that was pressed
+     *
+     * @return This event
+     */
+    public KeyPressedEvent set(Key key)
+    {
+        init(key);
+        return this;
+    }
+
+    @Override
+    public KeyPressedEvent copy()
+    {
+        return new KeyPressedEvent(getKey());
+    }
 }
@@ -49,6 +49,28 @@ public class KeyReleasedEvent extends KeyboardEvent
         this.pressTime = pressTime;
     }
 
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param key The key that was released
+     * @param pressTime How long the key was pressed before it was released
+     *
+     * @return This event
+     */
+    public KeyReleasedEvent set(Key key, long pressTime)
+    {
+        init(key);
+        this.pressTime = pressTime;
+
+        return this;
+    }
+
+    @Override
+    public KeyReleasedEvent copy()
+    {
+        return new KeyReleasedEvent(getKey(), pressTime);
+    }
+
     /**
      * @return How long the key was pressed before it was released
      */
@@ -49,6 +49,18 @@ public abstract class KeyboardEvent extends NEvent
         this.key = key;
     }
 
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param key The key of the event
+     */
+    protected void init(Key key)
+    {
+        reuse();
+
+        this.key = key;
+    }
+
     /**
      * @return The key of the event
      */
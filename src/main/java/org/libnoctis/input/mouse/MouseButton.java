@@ -56,6 +56,11 @@ public enum MouseButton
      */
     ACTION_SECOND;
 
+    /**
+     * The buttons, by id ({@link #values()} copies them at each call)
+     */
+    private static final MouseButton[] VALUES = values();
+
     /**
      * Get the MouseButton of the given id
      *
@@ -70,6 +75,6 @@ public enum MouseButton
             return null;
         }
 
-        return values()[id];
+        return VALUES[id];
     }
 }
@@ -18,6 +18,7 @@
  */
 package org.libnoctis.input.mouse;
 
+import java.util.List;
 import org.libnoctis.util.Vector2i;
 
 /**
@@ -61,6 +62,56 @@ public class MouseDraggedEvent extends MouseMoveEvent
         this.timeSinceClick = timeSinceClick;
     }
 
+    /**
+     * The Mouse Dragged Event, merging many mouse samples
+     *
+     * @param pos The current mouse position
+     * @param button The mouse button that clicked
+     * @param motion The motion of the mouse
+     * @param clickPos The position of the first click
+     * @param timeSinceClick The time since the first click
+     * @param samples The positions of the merged samples, oldest first
+     */
+    public MouseDraggedEvent(Vector2i pos, MouseButton button, Vector2i motion, Vector2i clickPos, long timeSinceClick, List<Vector2i> samples)
+    {
+        super(pos, button, motion, samples);
+
+        this.clickPos = clickPos;
+        this.timeSinceClick = timeSinceClick;
+    }
+
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param x The mouse X position
+     * @param y The mouse Y position
+     * @param button The mouse button that clicked
+     * @param motionX The horizontal motion of the mouse
+     * @param motionY The vertical motion of the mouse
+     * @param clickX The X position of the first click
+     * @param clickY The Y position of the first click
+     * @param timeSinceClick The time since the first click
+     * @param samples The positions of the merged samples, oldest first, or
+     *            null
+     *
+     * @return This event
+     */
+    public MouseDraggedEvent set(int x, int y, MouseButton button, int motionX, int motionY, int clickX, int clickY, long timeSinceClick, List<Vector2i> samples)
+    {
+        init(x, y, button, motionX, motionY, samples);
+
+        this.clickPos.set(clickX, clickY);
+        this.timeSinceClick = timeSinceClick;
+
+        return this;
+    }
+
+    @Override
+    public MouseDraggedEvent copy()
+    {
+        return new MouseDraggedEvent(new Vector2i(getPos().getX(), getPos().getY()), getButton(), new Vector2i(getMotion().getX(), getMotion().getY()), new Vector2i(clickPos.getX(), clickPos.getY()), timeSinceClick, samples);
+    }
+
     /**
      * @return The position of the first click
      */
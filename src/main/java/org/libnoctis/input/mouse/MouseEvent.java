@@ -70,6 +70,21 @@ public abstract class MouseEvent extends NEvent
         this.button = button;
     }
 
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param x The mouse X position
+     * @param y The mouse Y position
+     * @param button The button that clicked
+     */
+    protected void init(int x, int y, MouseButton button)
+    {
+        reuse();
+
+        this.pos.set(x, y);
+        this.button = button;
+    }
+
     /**
      * @return The position where the mouse is
      */
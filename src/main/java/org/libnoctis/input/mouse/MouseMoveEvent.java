@@ -18,6 +18,8 @@
  */
 package org.libnoctis.input.mouse;
 
+import java.util.Collections;
+import java.util.List;
 import org.libnoctis.util.Vector2i;
 
 /**
@@ -29,6 +31,11 @@ import org.libnoctis.util.Vector2i;
  *     also contains the current mouse position
  * </p>
  *
+ * <p>
+ *     If the frame coalesces the mouse motion, one event is sent per frame
+ *     for all the mouse samples, with the movement since the previous event.
+ * </p>
+ *
  * @author Litarvan
  * @version 0.1.0
  * @since 0.0.1
@@ -40,6 +47,11 @@ public class MouseMoveEvent extends MouseEvent
      */
     private Vector2i motion;
 
+    /**
+     * The positions of the merged mouse samples, null if they weren't kept.
+     */
+    protected List<Vector2i> samples;
+
     /**
      * The Noctis Mouse Event
      *
@@ -52,6 +64,19 @@ public class MouseMoveEvent extends MouseEvent
         this.motion = motion;
     }
 
+    /**
+     * The Noctis Mouse Event, merging many mouse samples
+     *
+     * @param pos The mouse position.
+     * @param motion The movement since last event.
+     * @param samples The positions of the merged samples, oldest first.
+     */
+    public MouseMoveEvent(Vector2i pos, Vector2i motion, List<Vector2i> samples)
+    {
+        this(pos, motion);
+        this.samples = samples;
+    }
+
     /**
      * The Noctis Mouse Event
      *
@@ -65,6 +90,63 @@ public class MouseMoveEvent extends MouseEvent
         this.motion = motion;
     }
 
+    /**
+     * The Noctis Mouse Event, merging many mouse samples
+     *
+     * @param pos The mouse position.
+     * @param button The button that is clicking (if dragging only).
+     * @param motion The movement since last event.
+     * @param samples The positions of the merged samples, oldest first.
+     */
+    protected MouseMoveEvent(Vector2i pos, MouseButton button, Vector2i motion, List<Vector2i> samples)
+    {
+        this(pos, button, motion);
+        this.samples = samples;
+    }
+
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param x The mouse X position.
+     * @param y The mouse Y position.
+     * @param motionX The horizontal movement since last event.
+     * @param motionY The vertical movement since last event.
+     * @param samples The positions of the merged samples, oldest first, or
+     *            null.
+     *
+     * @return This event
+     */
+    public MouseMoveEvent set(int x, int y, int motionX, int motionY, List<Vector2i> samples)
+    {
+        init(x, y, null, motionX, motionY, samples);
+        return this;
+    }
+
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param x The mouse X position.
+     * @param y The mouse Y position.
+     * @param button The button that is clicking (if dragging only).
+     * @param motionX The horizontal movement since last event.
+     * @param motionY The vertical movement since last event.
+     * @param samples The positions of the merged samples, oldest first, or
+     *            null.
+     */
+    protected void init(int x, int y, MouseButton button, int motionX, int motionY, List<Vector2i> samples)
+    {
+        init(x, y, button);
+
+        this.motion.set(motionX, motionY);
+        this.samples = samples;
+    }
+
+    @Override
+    public MouseMoveEvent copy()
+    {
+        return new MouseMoveEvent(new Vector2i(getPos().getX(), getPos().getY()), new Vector2i(motion.getX(), motion.getY()), samples);
+    }
+
     /**
      * @return The movement since last event.
      */
@@ -72,4 +154,14 @@ public class MouseMoveEvent extends MouseEvent
     {
         return motion;
     }
+
+    /**
+     * @return The positions of the mouse samples merged in this event, oldest
+     *         first, or only the current position if they weren't kept (see
+     *         {@link org.libnoctis.components.NFrame#setMotionHistory}).
+     */
+    public List<Vector2i> getSamples()
+    {
+        return samples == null ? Collections.singletonList(getPos()) : samples;
+    }
 }
@@ -40,4 +40,25 @@ public class MousePressedEvent extends MouseEvent
     {
         super(pos, button);
     }
+
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param x The mouse X position
+     * @param y The mouse Y position
+     * @param button The button that was pressed
+     *
+     * @return This event
+     */
+    public MousePressedEvent set(int x, int y, MouseButton button)
+    {
+        init(x, y, button);
+        return this;
+    }
+
+    @Override
+    public MousePressedEvent copy()
+    {
+        return new MousePressedEvent(new Vector2i(getPos().getX(), getPos().getY()), getButton());
+    }
 }
@@ -43,4 +43,25 @@ public class MouseReleasedEvent extends MouseEvent
     {
         super(pos, button);
     }
+
+    /**
+     * Changes this event to dispatch it again.
+     *
+     * @param x The mouse X position
+     * @param y The mouse Y position
+     * @param button The mouse button that was released
+     *
+     * @return This event
+     */
+    public MouseReleasedEvent set(int x, int y, MouseButton button)
+    {
+        init(x, y, button);
+        return this;
+    }
+
+    @Override
+    public MouseReleasedEvent copy()
+    {
+        return new MouseReleasedEvent(new Vector2i(getPos().getX(), getPos().getY()), getButton());
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.ninepatch;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import org.libnoctis.render.Drawer;
+import org.libnoctis.render.gl.GlTexture;
+import org.libnoctis.render.gl.TextureRegion;
+import org.libnoctis.util.Dimension;
+
+import com.android.ninepatch.NinePatchChunk;
+
+/**
+ * The Nine Patch Texture
+ *
+ * <p>
+ *     A nine patch laid out for a size. It doesn't have its own texture : it
+ *     is drawn as (up to nine) stretched quads of the uploaded nine patch
+ *     image, so any size costs the same.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class NinePatchTexture extends GlTexture
+{
+    /**
+     * The texture of the nine patch content.
+     */
+    private final GlTexture source;
+
+    /**
+     * The screen rectangles of the patches, as {x, y, width, height}.
+     */
+    private final int[][] quads;
+
+    /**
+     * The region of the source texture drawn in each quad.
+     */
+    private final TextureRegion[] regions;
+
+    /**
+     * The patches of the nine patch, to lay it out again.
+     */
+    private final NinePatchChunk chunk;
+
+    /**
+     * This nine patch laid out for the last size it was drawn at, when it
+     * was laid out for an empty size and can't be scaled.
+     */
+    private NinePatchTexture resized;
+
+    /**
+     * The Nine Patch Texture
+     *
+     * @param source The texture of the nine patch content.
+     * @param chunk The patches of the nine patch.
+     * @param width The width to lay the nine patch out for.
+     * @param height The height to lay the nine patch out for.
+     */
+    NinePatchTexture(GlTexture source, NinePatchChunk chunk, int width, int height)
+    {
+        super(source.getId(), new Dimension(width, height));
+
+        this.source = source;
+        this.chunk = chunk;
+
+        final List<int[]> quads = new ArrayList<int[]>(9);
+        final List<TextureRegion> regions = new ArrayList<TextureRegion>(9);
+
+        final TextureRegion base = source.getRegion();
+        final float uScale = (base.getMaxU() - base.getMinU()) / source.getDimensions().getWidth();
+        final float vScale = (base.getMaxV() - base.getMinV()) / source.getDimensions().getHeight();
+
+        boolean patched = chunk.visit(width, height, new NinePatchChunk.PatchVisitor() {
+            @Override
+            public void patch(int x, int y, int width, int height, Rectangle r)
+            {
+                if (width <= 0 || height <= 0)
+                    return;
+
+                quads.add(new int[] {x, y, width, height});
+                regions.add(new TextureRegion(base.getMinU() + r.x * uScale, base.getMinV() + r.y * vScale, base.getMinU() + (r.x + r.width) * uScale, base.getMinV() + (r.y + r.height) * vScale));
+            }
+        });
+
+        if (!patched)
+        {
+            // No patch, the image is just stretched
+            quads.add(new int[] {0, 0, width, height});
+            regions.add(base);
+        }
+
+        this.quads = quads.toArray(new int[quads.size()][]);
+        this.regions = regions.toArray(new TextureRegion[regions.size()]);
+    }
+
+    /**
+     * Draws the patches. If the given size isn't the one this texture was
+     * laid out for, the patches are scaled.
+     */
+    @Override
+    public void draw(Drawer drawer, int x, int y, int width, int height)
+    {
+        int layoutWidth = getDimensions().getWidth();
+        int layoutHeight = getDimensions().getHeight();
+
+        if ((layoutWidth == 0 || layoutHeight == 0) && (width != layoutWidth || height != layoutHeight))
+        {
+            // Laid out before its component had a size, can't be scaled
+            if (width <= 0 || height <= 0)
+                return;
+
+            NinePatchTexture patch = resized;
+
+            if (patch == null || patch.getDimensions().getWidth() != width || patch.getDimensions().getHeight() != height)
+            {
+                patch = new NinePatchTexture(source, chunk, width, height);
+                resized = patch;
+            }
+
+            patch.draw(drawer, x, y, width, height);
+            return;
+        }
+
+        for (int i = 0; i < quads.length; i++)
+        {
+            int[] quad = quads[i];
+
+            if (width == layoutWidth && height == layoutHeight)
+            {
+                drawer.drawTexture(x + quad[0], y + quad[1], quad[2], quad[3], source, regions[i]);
+            }
+            else
+            {
+                int minX = quad[0] * width / layoutWidth;
+                int minY = quad[1] * height / layoutHeight;
+                int maxX = (quad[0] + quad[2]) * width / layoutWidth;
+                int maxY = (quad[1] + quad[3]) * height / layoutHeight;
+
+                drawer.drawTexture(x + minX, y + minY, maxX - minX, maxY - minY, source, regions[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The texture of the nine patch content.
+     */
+    public GlTexture getSource()
+    {
+        return source;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TextureRegion getRegion()
+    {
+        return source.getRegion();
+    }
+}
@@ -21,7 +21,9 @@ package org.libnoctis.ninepatch;
 import java.awt.image.BufferedImage;
 import java.util.HashMap;
 
+import org.libnoctis.render.gl.GlResourceManager;
 import org.libnoctis.render.gl.GlTexture;
+import org.libnoctis.render.gl.TextureAtlas;
 import org.libnoctis.util.Vector2i;
 
 import com.android.ninepatch.GraphicsUtilities;
@@ -35,6 +37,9 @@ import com.android.ninepatch.NinePatch;
  *     official nine patch, it can be directly created by an image,
  *     and generated to a BufferedImage or a GlTexture.
  *
+ *     Generated GlTextures are drawn as stretched quads of the nine
+ *     patch image, uploaded once, so resizing doesn't create textures.
+ *
  *     Use {@link NoctisNinePatchCache} to load a nine patch.
  * </p>
  *
@@ -45,22 +50,39 @@ import com.android.ninepatch.NinePatch;
 public class NoctisNinePatch extends NinePatch
 {
     /**
-     * The generation cache, to keep the generated patch
+     * The baking cache, to keep the baked patches. Its textures are
+     * evicted by the {@link GlResourceManager} when the memory budget is
+     * exceeded.
      */
     private final HashMap<Vector2i, GlTexture> cache = new HashMap<Vector2i, GlTexture>();
 
+    /**
+     * The atlas where the generated textures are packed
+     */
+    private final TextureAtlas atlas;
+
+    /**
+     * The texture of the nine patch content, uploaded on first generation
+     */
+    private GlTexture source;
+
     /**
      * The Noctis Nine Patch
      *
      * @param image The nine patch image
+     * @param atlas The atlas where the generated textures are packed
      */
-    NoctisNinePatch(BufferedImage image)
+    NoctisNinePatch(BufferedImage image, TextureAtlas atlas)
     {
         super(image);
+
+        this.atlas = atlas;
     }
 
     /**
-     * Generate the nine patch for the given dimensions
+     * Generate the nine patch for the given dimensions. The returned
+     * texture is drawn as stretched parts of the nine patch image, it
+     * doesn't use more graphic memory.
      *
      * @param dimensions The dimensions of the image to generate
      *
@@ -68,11 +90,52 @@ public class NoctisNinePatch extends NinePatch
      */
     public GlTexture generateFor(Vector2i dimensions)
     {
-        if (cache.containsKey(dimensions))
-            return cache.get(dimensions);
+        if (source == null)
+            source = atlas.add(getImage());
+
+        return new NinePatchTexture(source, getChunk(), dimensions.getX(), dimensions.getY());
+    }
+
+    /**
+     * Bake the nine patch for the given dimensions into a texture region,
+     * for when a real texture is needed (the baked textures are cached)
+     *
+     * @param dimensions The dimensions of the image to bake
+     *
+     * @return The baked image
+     */
+    public GlTexture bake(final Vector2i dimensions)
+    {
+        GlTexture texture;
+
+        synchronized (cache)
+        {
+            texture = cache.get(dimensions);
+        }
+
+        if (texture != null)
+        {
+            GlResourceManager.touch(texture);
+            return texture;
+        }
+
+        texture = atlas.add(raw(dimensions));
+
+        synchronized (cache)
+        {
+            cache.put(dimensions, texture);
+        }
 
-        GlTexture texture = new GlTexture(raw(dimensions));
-        cache.put(dimensions, texture);
+        GlResourceManager.cache(texture, new GlResourceManager.EvictionListener() {
+            @Override
+            public void evicted(GlTexture texture)
+            {
+                synchronized (cache)
+                {
+                    cache.remove(dimensions);
+                }
+            }
+        });
 
         return texture;
     }
@@ -66,7 +66,7 @@ public final class NoctisNinePatchCache
         if (cache.containsKey(path))
             return cache.get(path);
 
-        NoctisNinePatch patch = new NoctisNinePatch(theme.requireImage(path));
+        NoctisNinePatch patch = new NoctisNinePatch(theme.requireImage(path), theme.getAtlas());
         cache.put(path, patch);
 
         return patch;
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render;
+
+import java.awt.Rectangle;
+
+/**
+ * The Damage Region
+ *
+ * <p>
+ *     Collects the rectangles of a frame that changed since the last render
+ *     pass (the damage), as their union. Rectangles can be added from any
+ *     Thread, the render Thread then takes the union to only redraw it.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class DamageRegion
+{
+    /**
+     * The union of the damaged rectangles.
+     */
+    private int minX, minY, maxX, maxY;
+
+    /**
+     * {@code true} if nothing was damaged.
+     */
+    private boolean empty = true;
+
+    /**
+     * Adds a rectangle to the damage.
+     *
+     * @param x The x position of the rectangle.
+     * @param y The y position of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    public synchronized void add(int x, int y, int width, int height)
+    {
+        if (width <= 0 || height <= 0)
+        {
+            return;
+        }
+
+        if (empty)
+        {
+            minX = x;
+            minY = y;
+            maxX = x + width;
+            maxY = y + height;
+            empty = false;
+        }
+        else
+        {
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x + width);
+            maxY = Math.max(maxY, y + height);
+        }
+    }
+
+    /**
+     * Damages everything.
+     */
+    public synchronized void addAll()
+    {
+        minX = minY = Integer.MIN_VALUE / 2;
+        maxX = maxY = Integer.MAX_VALUE / 2;
+        empty = false;
+    }
+
+    /**
+     * @return {@code true} if nothing was damaged since the last poll.
+     */
+    public synchronized boolean isEmpty()
+    {
+        return empty;
+    }
+
+    /**
+     * Takes the damage, clipped to the given bounds, and clears it.
+     *
+     * @param width The width of the clipping bounds (starting at 0, 0).
+     * @param height The height of the clipping bounds (starting at 0, 0).
+     * @param result The rectangle where the damage is stored.
+     *
+     * @return {@code false} if nothing visible was damaged.
+     */
+    public synchronized boolean poll(int width, int height, Rectangle result)
+    {
+        if (empty)
+        {
+            return false;
+        }
+
+        empty = true;
+
+        int x1 = Math.max(minX, 0);
+        int y1 = Math.max(minY, 0);
+        int x2 = Math.min(maxX, width);
+        int y2 = Math.min(maxY, height);
+
+        if (x2 <= x1 || y2 <= y1)
+        {
+            return false;
+        }
+
+        result.setBounds(x1, y1, x2 - x1, y2 - y1);
+
+        return true;
+    }
+}
@@ -145,7 +145,7 @@ public abstract class Drawer
      */
     public void drawTexture(int x, int y, int width, int height, GlTexture texture)
     {
-        drawTexture(x, y, width, height, texture, TextureRegion.WHOLE_TEXTURE);
+        texture.draw(this, x, y, width, height);
     }
 
     /**
@@ -208,6 +208,15 @@ public abstract class Drawer
     {
     }
 
+    /**
+     * Draws everything that was queued by this drawer, if it doesn't draw
+     * right away. Must be called before changing the GL state (framebuffer,
+     * blending, etc.) outside of the drawer.
+     */
+    public void flush()
+    {
+    }
+
     /**
      * Called before rendering a frame.
      */
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.nio.ByteBuffer;
+import org.libnoctis.render.Color;
+import org.libnoctis.render.Drawer;
+import org.lwjgl.BufferUtils;
+
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * The Batch Drawer
+ *
+ * <p>
+ *     Draw things by collecting every quad of a frame into one interleaved
+ *     client-side vertex array, flushed with a single {@code glDrawArrays}
+ *     call when the bound texture changes, when the buffer is full, or at the
+ *     end of the frame.
+ * </p>
+ *
+ * <p>
+ *     Translations are applied on the CPU so they don't break the batch.
+ *     Colors are stored per vertex, so changing the color (as font color codes
+ *     do) doesn't break it either.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class BatchDrawer extends Drawer
+{
+    /**
+     * Size of one vertex, in bytes : position (2 floats), texture
+     * coordinates (2 floats) and color (4 unsigned bytes).
+     */
+    private static final int VERTEX_SIZE = 2 * 4 + 2 * 4 + 4;
+
+    /**
+     * Offset of the texture coordinates in a vertex, in bytes.
+     */
+    private static final int TEX_COORD_OFFSET = 2 * 4;
+
+    /**
+     * Offset of the color in a vertex, in bytes.
+     */
+    private static final int COLOR_OFFSET = 4 * 4;
+
+    /**
+     * Default amount of quads that fit in the vertex buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * The interleaved vertex buffer.
+     */
+    private final ByteBuffer vertices;
+
+    /**
+     * How many quads fit in the vertex buffer.
+     */
+    private final int capacity;
+
+    /**
+     * How many quads are waiting to be flushed.
+     */
+    private int quads;
+
+    /**
+     * The texture ID of the pending quads, 0 if they are not textured.
+     */
+    private int batchTexture;
+
+    /**
+     * The current font to use with the drawString method
+     */
+    private GlFont currentFont;
+
+    /**
+     * The current drawing color
+     */
+    private Color currentColor;
+
+    /**
+     * The current translation.
+     */
+    private int translateX, translateY;
+
+    /**
+     * Saved translations, used by push/popMatrix.
+     */
+    private int[] matrixStack = new int[32];
+
+    /**
+     * Size of the matrix stack (two ints per matrix).
+     */
+    private int matrixStackSize;
+
+    public BatchDrawer()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity How many quads can be batched before a flush is forced.
+     */
+    public BatchDrawer(int capacity)
+    {
+        this.capacity = capacity;
+        this.vertices = BufferUtils.createByteBuffer(capacity * 4 * VERTEX_SIZE);
+        this.currentColor = Color.WHITE;
+    }
+
+    @Override
+    public void setColor(Color color)
+    {
+        currentColor = color;
+    }
+
+    @Override
+    public Color getColor()
+    {
+        return currentColor;
+    }
+
+    @Override
+    public void setFont(GlFont font)
+    {
+        this.currentFont = font;
+    }
+
+    @Override
+    public GlFont getFont()
+    {
+        return currentFont;
+    }
+
+    @Override
+    public boolean shouldPaintEveryFrame()
+    {
+        return true;
+    }
+
+    @Override
+    public void drawTexture(int x, int y, int width, int height, GlTexture texture, TextureRegion icon)
+    {
+        prepare(texture.getId());
+
+        x += translateX;
+        y += translateY;
+
+        vertex(x, y, icon.getMinU(), icon.getMinV());
+        vertex(x, y + height, icon.getMinU(), icon.getMaxV());
+        vertex(x + width, y + height, icon.getMaxU(), icon.getMaxV());
+        vertex(x + width, y, icon.getMaxU(), icon.getMinV());
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height)
+    {
+        prepare(0);
+
+        x += translateX;
+        y += translateY;
+
+        vertex(x, y, 0.0f, 0.0f);
+        vertex(x, y + height, 0.0f, 0.0f);
+        vertex(x + width, y + height, 0.0f, 0.0f);
+        vertex(x + width, y, 0.0f, 0.0f);
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height)
+    {
+        // Lines can't go in the quad batch, so they're drawn right away.
+        flush();
+
+        x += translateX;
+        y += translateY;
+
+        glDisable(GlTexture.TARGET);
+        glColor4f(currentColor.getRedFloat(), currentColor.getGreenFloat(), currentColor.getBlueFloat(), currentColor.getAlphaFloat());
+        glBegin(GL_LINE_LOOP);
+        {
+            glVertex2i(x, y);
+            glVertex2i(x, y + height);
+            glVertex2i(x + width, y + height);
+            glVertex2i(x + width, y);
+        }
+        glEnd();
+        glEnable(GlTexture.TARGET);
+    }
+
+    @Override
+    public void pushMatrix()
+    {
+        if (matrixStackSize + 2 > matrixStack.length)
+        {
+            int[] newStack = new int[matrixStack.length * 2];
+            System.arraycopy(matrixStack, 0, newStack, 0, matrixStackSize);
+            matrixStack = newStack;
+        }
+
+        matrixStack[matrixStackSize++] = translateX;
+        matrixStack[matrixStackSize++] = translateY;
+    }
+
+    @Override
+    public void popMatrix()
+    {
+        if (matrixStackSize == 0)
+        {
+            throw new IllegalStateException("Matrix stack underflow");
+        }
+
+        translateY = matrixStack[--matrixStackSize];
+        translateX = matrixStack[--matrixStackSize];
+    }
+
+    @Override
+    public void translate(int x, int y)
+    {
+        translateX += x;
+        translateY += y;
+    }
+
+    @Override
+    public void preRender()
+    {
+        quads = 0;
+        vertices.clear();
+        translateX = translateY = 0;
+        matrixStackSize = 0;
+    }
+
+    @Override
+    public void postRender()
+    {
+        flush();
+    }
+
+    /**
+     * Draws all the pending quads.
+     */
+    @Override
+    public void flush()
+    {
+        if (quads == 0)
+        {
+            return;
+        }
+
+        if (batchTexture == 0)
+        {
+            glDisable(GlTexture.TARGET);
+        }
+        else
+        {
+            glBindTexture(GlTexture.TARGET, batchTexture);
+        }
+
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glEnableClientState(GL_TEXTURE_COORD_ARRAY);
+        glEnableClientState(GL_COLOR_ARRAY);
+
+        vertices.position(0);
+        glVertexPointer(2, GL_FLOAT, VERTEX_SIZE, vertices);
+        vertices.position(TEX_COORD_OFFSET);
+        glTexCoordPointer(2, GL_FLOAT, VERTEX_SIZE, vertices);
+        vertices.position(COLOR_OFFSET);
+        glColorPointer(4, GL_UNSIGNED_BYTE, VERTEX_SIZE, vertices);
+
+        glDrawArrays(GL_QUADS, 0, quads * 4);
+
+        glDisableClientState(GL_COLOR_ARRAY);
+        glDisableClientState(GL_TEXTURE_COORD_ARRAY);
+        glDisableClientState(GL_VERTEX_ARRAY);
+
+        if (batchTexture == 0)
+        {
+            glEnable(GlTexture.TARGET);
+        }
+        else
+        {
+            GlTexture.bindNone();
+        }
+
+        quads = 0;
+        vertices.clear();
+    }
+
+    /**
+     * Makes room for a new quad using the given texture, flushing the pending
+     * quads if needed.
+     *
+     * @param textureId The texture ID of the quad, 0 for none.
+     */
+    private void prepare(int textureId)
+    {
+        if (quads > 0 && (textureId != batchTexture || quads == capacity))
+        {
+            flush();
+        }
+
+        batchTexture = textureId;
+        quads++;
+    }
+
+    private void vertex(int x, int y, float u, float v)
+    {
+        vertices.putFloat(x);
+        vertices.putFloat(y);
+        vertices.putFloat(u);
+        vertices.putFloat(v);
+        vertices.put(currentColor.getRed());
+        vertices.put(currentColor.getGreen());
+        vertices.put(currentColor.getBlue());
+        vertices.put(currentColor.getAlpha());
+    }
+}
@@ -48,10 +48,11 @@ public class DisplayListDrawer extends DirectDrawer
     {
         if (component.displayList != -1)
         {
-            glDeleteLists(component.displayList, 1);
+            GlResourceManager.deleteList(component.displayList);
         }
 
         component.displayList = glGenLists(1);
+        GlResourceManager.trackList(component, component.displayList);
 
         glNewList(component.displayList, GL_COMPILE);
     }
@@ -19,6 +19,7 @@
 package org.libnoctis.render.gl;
 
 import java.awt.Font;
+import java.io.File;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -29,6 +30,11 @@ import java.util.TreeMap;
  *     The font cache keeps the generated font to re-use them.
  * </p>
  *
+ * <p>
+ *     If a disk cache directory is set, the rendered glyphs are also saved
+ *     there, and loaded instead of being rendered again on the next starts.
+ * </p>
+ *
  * @author Wytrem
  * @version 0.1.0
  * @since 0.0.1
@@ -40,6 +46,33 @@ public class FontCache
      */
     private static final SortedMap<String, GlFont> FONTS = new TreeMap<String, GlFont>();
 
+    /**
+     * Directory where the rendered glyphs are saved, null if they aren't.
+     */
+    private static volatile File diskCacheDirectory;
+
+    /**
+     * @return The directory where the rendered glyphs are saved, or null if
+     *         the disk cache is disabled.
+     */
+    public static File getDiskCacheDirectory()
+    {
+        return diskCacheDirectory;
+    }
+
+    /**
+     * Sets the directory where the rendered glyphs are saved, so fonts created
+     * after this call load them instead of rendering them again. The disk
+     * cache is disabled by default.
+     *
+     * @param directory The cache directory, created if needed, or null to
+     *            disable the disk cache.
+     */
+    public static void setDiskCacheDirectory(File directory)
+    {
+        diskCacheDirectory = directory;
+    }
+
     /**
      * Gets or creates the {@code GlFont} corresponding to the passed AWT font.
      * 
@@ -61,4 +94,44 @@ public class FontCache
             return glFont;
         }
     }
+
+    /**
+     * Gets a {@code SdfFont} corresponding to the passed AWT font. All the
+     * sizes of a font share the same glyphs, only the first one renders them.
+     * Each size is cached too, so its laid out strings are kept.
+     *
+     * @param font The AWT font, with the size to draw at.
+     *
+     * @return A SDF font, drawn at the size of the given font.
+     */
+    public static GlFont getSdfFont(Font font)
+    {
+        String key = "sdf/" + font.getName() + "/" + font.getStyle();
+
+        synchronized (FONTS)
+        {
+            GlFont glFont = FONTS.get(key);
+            if (glFont == null)
+            {
+                glFont = SdfFont.fromAwt(font);
+                FONTS.put(key, glFont);
+            }
+
+            if (glFont.getFontSize() == font.getSize())
+            {
+                return glFont;
+            }
+
+            String sizedKey = key + "/" + font.getSize2D();
+            GlFont derived = FONTS.get(sizedKey);
+
+            if (derived == null)
+            {
+                derived = glFont.derive(font.getSize2D());
+                FONTS.put(sizedKey, derived);
+            }
+
+            return derived;
+        }
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.libnoctis.util.Histogram;
+
+/**
+ * The Frame Metrics
+ *
+ * <p>
+ *     Durations of the phases of the frames rendered by a
+ *     {@link NoctisFrameThread}, in nanoseconds. They can be read from any
+ *     Thread.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class FrameMetrics
+{
+    /**
+     * The timed phases of a frame.
+     */
+    public enum Phase
+    {
+        /**
+         * Running the tasks given to {@link NoctisFrameThread#runLater}
+         */
+        TASKS,
+
+        /**
+         * Polling and dispatching the input events
+         */
+        INPUT,
+
+        /**
+         * Laying out the containers (the total of the frame, recorded for
+         * the frames laying something out)
+         */
+        LAYOUT,
+
+        /**
+         * {@link org.libnoctis.render.Drawer#preRender()}
+         */
+        PRE_RENDER,
+
+        /**
+         * Rendering the components
+         */
+        RENDER,
+
+        /**
+         * {@link org.libnoctis.render.Drawer#postRender()}
+         */
+        POST_RENDER,
+
+        /**
+         * {@link org.lwjgl.opengl.Display#update()}, swapping the buffers
+         */
+        DISPLAY_UPDATE,
+
+        /**
+         * A whole frame, without the wait for the next one
+         */
+        FRAME
+    }
+
+    private final Histogram[] histograms = new Histogram[Phase.values().length];
+
+    /**
+     * The time spent laying out since the last frame, in nanoseconds.
+     */
+    private final AtomicLong layoutNanos = new AtomicLong();
+
+    public FrameMetrics()
+    {
+        for (int i = 0; i < histograms.length; i++)
+        {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records the duration of a phase.
+     *
+     * @param phase The phase.
+     * @param nanos Its duration, in nanoseconds.
+     */
+    public void record(Phase phase, long nanos)
+    {
+        histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Adds the duration of a layout to the total of the current frame. Can be
+     * called from any Thread.
+     *
+     * @param nanos The duration of the layout, in nanoseconds.
+     */
+    public void addLayout(long nanos)
+    {
+        layoutNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records the layout time of the frame, if it laid something out, and
+     * starts the total of the next one. Called once per frame by the frame
+     * Thread.
+     */
+    void recordLayout()
+    {
+        long nanos = layoutNanos.getAndSet(0);
+
+        if (nanos > 0)
+        {
+            record(Phase.LAYOUT, nanos);
+        }
+    }
+
+    /**
+     * @param phase A phase.
+     *
+     * @return The recorded durations of this phase, in nanoseconds.
+     */
+    public Histogram get(Phase phase)
+    {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Removes all the recorded durations.
+     */
+    public void reset()
+    {
+        for (Histogram histogram : histograms)
+        {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("FrameMetrics[");
+
+        for (Phase phase : Phase.values())
+        {
+            Histogram histogram = get(phase);
+
+            builder.append("\n  ").append(phase).append(": p50=").append(histogram.getPercentile(50) / 1000).append("us, p99=").append(histogram.getPercentile(99) / 1000).append("us, max=").append(histogram.getMax() / 1000).append("us");
+        }
+
+        return builder.append("\n]").toString();
+    }
+}
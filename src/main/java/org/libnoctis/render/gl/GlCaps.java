@@ -18,8 +18,14 @@
  */
 package org.libnoctis.render.gl;
 
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GLContext;
+
+
+import static org.lwjgl.opengl.GL11.GL_ALPHA8;
 import static org.lwjgl.opengl.GL11.GL_MAX_TEXTURE_SIZE;
 import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL30.GL_R8;
 
 public class GlCaps
 {
@@ -34,4 +40,40 @@ public class GlCaps
         
         return MAX_TEXTURE_SIZE;
     }
+
+    /**
+     * @return {@code true} if render-to-texture framebuffers
+     *         ({@link GlFramebuffer}) can be used.
+     */
+    public static boolean isFramebufferSupported()
+    {
+        return GLContext.getCapabilities().GL_EXT_framebuffer_object;
+    }
+
+    /**
+     * @return {@code true} if containers can be cached in a
+     *         {@link RenderLayer}.
+     */
+    public static boolean isRenderLayerSupported()
+    {
+        return isFramebufferSupported() && GLContext.getCapabilities().OpenGL14;
+    }
+
+    /**
+     * Gives the internal format of single channel textures, such as the glyph
+     * pages : {@code GL_R8} read as white with the red channel as alpha if
+     * red textures and swizzles are supported, {@code GL_ALPHA8} otherwise.
+     *
+     * @return The internal format to give to
+     *         {@link GlTexture#GlTexture(int, int, int)}.
+     */
+    public static int getAlphaTextureFormat()
+    {
+        ContextCapabilities caps = GLContext.getCapabilities();
+
+        boolean red = caps.OpenGL30 || caps.GL_ARB_texture_rg;
+        boolean swizzle = caps.OpenGL33 || caps.GL_ARB_texture_swizzle || caps.GL_EXT_texture_swizzle;
+
+        return red && swizzle ? GL_R8 : GL_ALPHA8;
+    }
 }
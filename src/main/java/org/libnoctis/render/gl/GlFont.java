@@ -22,10 +22,12 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -34,8 +36,6 @@ import org.libnoctis.render.Drawer;
 import org.libnoctis.util.Pair;
 import org.libnoctis.util.Vector2i;
 
-import com.android.ninepatch.GraphicsUtilities;
-
 
 /**
  * A Noctis Font
@@ -45,6 +45,11 @@ import com.android.ninepatch.GraphicsUtilities;
  * don't jugde please.
  * </p>
  *
+ * <p>
+ * Any character of the AWT font can be drawn : glyphs are rendered the first
+ * time they are needed, and packed in texture pages (see {@link GlyphCache}).
+ * </p>
+ *
  * @author Wytrem
  * @version 0.1.0
  * @since 0.0.1
@@ -57,130 +62,233 @@ public class GlFont
     private int fontSize;
 
     /**
-     * The font texture (where the characters are)
+     * This font glyphs (characters as texture), rendered when first needed
      */
-    private transient GlTexture fontTexture;
+    private GlyphCache glyphs;
 
     /**
-     * The width of the font texture
+     * The AWT fonts version of this font
      */
-    private transient int textureWidth;
+    private Font font;
 
     /**
-     * The height of the font texture
+     * The metrics of the AWT font
      */
-    private transient int textureHeight;
+    private FontMetrics fontMetrics;
 
     /**
-     * This font glyphs (characters as texture)
+     * Graphics used to measure the characters
      */
-    private Map<Character, Glyph> glyphs;
+    private Graphics2D metricsGraphics;
 
     /**
-     * The AWT fonts version of this font
+     * The render context of {@link #metricsGraphics}, immutable so the
+     * characters can be measured from any Thread
      */
-    private Font font;
+    private FontRenderContext renderContext;
+
+    /**
+     * The maximum number of laid out strings kept by a font
+     */
+    private static final int MAX_RUNS = 256;
+
+    /**
+     * The maximum number of times a string is laid out again because pages
+     * were evicted while laying it out
+     */
+    private static final int MAX_LAYOUTS = 3;
+
+    /**
+     * The laid out strings, the least recently drawn first
+     */
+    private final Map<String, GlyphRun> runs = new LinkedHashMap<String, GlyphRun>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GlyphRun> eldest)
+        {
+            return size() > MAX_RUNS;
+        }
+    };
 
-    private GlFont(List<Character> chars, Font font)
+    /**
+     * The maximum number of measured strings kept by a font
+     */
+    private static final int MAX_SIZES = 1024;
+
+    /**
+     * The measured strings, as {width, lines}, the least recently measured
+     * first
+     */
+    private final Map<String, int[]> sizes = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest)
+        {
+            return size() > MAX_SIZES;
+        }
+    };
+
+    /**
+     * Ratio between the drawn size and the size of the rendered glyphs
+     */
+    private float scale = 1.0f;
+
+    /**
+     * The height of a line of the rendered glyphs
+     */
+    private int glyphsCharHeight;
+
+    GlFont(List<Character> chars, Font font)
     {
         this.font = font;
-        buildTexture(chars);
-    }
+        this.fontSize = font.getSize();
 
-    private void buildTexture(List<Character> alphabet)
-    {
-        glyphs = new HashMap<Character, Glyph>();
-        int amountOfChars = alphabet.size();
-        fontSize = font.getSize();
+        metricsGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        metricsGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        metricsGraphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        fontMetrics = metricsGraphics.getFontMetrics(font);
+        renderContext = metricsGraphics.getFontRenderContext();
 
-        textureWidth = textureHeight = 1024;
+        baseCharHeight = glyphsCharHeight = fontMetrics.getMaxAscent() + fontMetrics.getMaxDescent();
 
-        Graphics2D g2d = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        FontMetrics fontMetrics = g2d.getFontMetrics(font);
+        glyphs = new GlyphCache(this, pageSize(baseCharHeight), GlyphCache.DEFAULT_MAX_PAGES);
 
-        BufferedImage imgTemp = GraphicsUtilities.createTranslucentCompatibleImage(textureWidth, textureHeight);
-        Graphics2D graphics = imgTemp.createGraphics();
-        TextureRegion.Builder iconBuilder = new TextureRegion.Builder(textureWidth, textureHeight);
+        // Render the given characters now, they will be uploaded when first drawn
+        glyphs.prewarm(chars);
+    }
 
-        baseCharHeight = fontMetrics.getMaxAscent() + fontMetrics.getMaxDescent();
+    /**
+     * A font drawing the glyphs of another font at another size.
+     *
+     * @param base The font whose glyphs are shared.
+     * @param size The drawn size of the new font, in pixels.
+     */
+    GlFont(GlFont base, float size)
+    {
+        this.font = base.font;
+        this.fontMetrics = base.fontMetrics;
+        this.metricsGraphics = base.metricsGraphics;
+        this.renderContext = base.renderContext;
+        this.glyphs = base.glyphs;
+        this.glyphsCharHeight = base.glyphsCharHeight;
+
+        setSize(size);
+    }
 
-        int x = 0;
-        int y = 0;
-        int w, h;
+    /**
+     * Changes the drawn size of this font, its glyphs are scaled.
+     *
+     * @param size The new size, in pixels.
+     */
+    void setSize(float size)
+    {
+        scale = size / font.getSize2D();
+        fontSize = Math.round(size);
+        baseCharHeight = scaled(glyphsCharHeight);
 
-        int maxHeight = 0;
+        synchronized (runs)
+        {
+            runs.clear();
+        }
 
-        for (int i = 0; i < amountOfChars; i++)
+        synchronized (sizes)
         {
-            Character ch = alphabet.get(i);
+            sizes.clear();
+        }
+    }
 
-            Pair<Glyph, BufferedImage> pair = buildChar(ch, fontMetrics, graphics);
-            if (pair != null)
-            {
-                BufferedImage charImage = pair.getValue();
-                Glyph glyph = pair.getKey();
+    /**
+     * @param value A glyph metric.
+     *
+     * @return The given metric at the drawn size.
+     */
+    int scaled(int value)
+    {
+        return scale == 1.0f ? value : Math.round(value * scale);
+    }
 
-                w = glyph.getWidth();
-                h = glyph.getHeight();
+    /**
+     * @return The ratio between the drawn size and the size of the rendered
+     *         glyphs.
+     */
+    float getScale()
+    {
+        return scale;
+    }
 
-                if (x > textureWidth - w)
-                {
-                    x = 0;
-                    y += maxHeight;
-                    maxHeight = 0;
-                }
+    /**
+     * @return The glyphs of this font.
+     */
+    GlyphCache getGlyphs()
+    {
+        return glyphs;
+    }
 
-                graphics.drawImage(charImage, x, y, null);
+    /**
+     * @param charHeight The height of the characters.
+     *
+     * @return The size of the glyph pages, big enough for the biggest
+     *         characters.
+     */
+    private static int pageSize(int charHeight)
+    {
+        int size = GlyphCache.DEFAULT_PAGE_SIZE;
 
-                glyph.setIcon(iconBuilder.build(x, y, w, h));
+        while (size < charHeight * 8)
+        {
+            size <<= 1;
+        }
 
-                glyphs.put(ch, glyph);
+        return size;
+    }
 
-                x += w;
+    /**
+     * Renders the glyph of a character. Can be called from several Threads at
+     * once.
+     *
+     * @param codePoint The code point of the character.
+     *
+     * @return The glyph, with its rendered pixels waiting to be uploaded, or
+     *         null if the character has no glyph.
+     */
+    Glyph rasterize(int codePoint)
+    {
+        Pair<Glyph, BufferedImage> pair = buildChar(codePoint, fontMetrics, renderContext);
 
-                if (maxHeight < h)
-                {
-                    maxHeight = h;
-                }
-            }
-        }
+        if (pair == null)
+            return null;
 
-        graphics.dispose();
+        Glyph glyph = pair.getKey();
+        glyph.setCodePoint(codePoint);
+        glyph.setPixels(pair.getValue());
 
-        fontTexture = new GlTexture(imgTemp);
+        return glyph;
     }
 
     int baseCharHeight;
 
-    Vector2i temp = new Vector2i(0, 0);
-
     /**
      * Creates a character texture and display information.
      * 
-     * @param ch The character to be computed.
+     * @param ch The code point of the character to be computed.
      * @param fontMetrics The global font metrics.
-     * @param spriteSheetGraphics The sprite sheet graphics that will be used to
-     *        render the character sprite to the sheet.
+     * @param renderContext The render context used to measure the character.
      *
      * @return The character display informations and its texture.
      */
-    private Pair<Glyph, BufferedImage> buildChar(char ch, FontMetrics fontMetrics, Graphics2D spriteSheetGraphics)
+    private Pair<Glyph, BufferedImage> buildChar(int ch, FontMetrics fontMetrics, FontRenderContext renderContext)
     {
         if (!shouldTryRendering(ch))
         {
             return null;
         }
 
-        String str = String.valueOf(ch);
+        String str = font.canDisplay(ch) ? new String(Character.toChars(ch)) : "?";
 
-        Rectangle2D bounds = fontMetrics.getStringBounds(str, spriteSheetGraphics);
+        Rectangle2D bounds = font.getStringBounds(str, renderContext);
 
         if (bounds.getWidth() <= 0)
         {
             str = "?";
-            bounds = fontMetrics.getStringBounds(str, spriteSheetGraphics);
+            bounds = font.getStringBounds(str, renderContext);
         }
 
         Glyph glyph = new Glyph();
@@ -188,7 +296,9 @@ public class GlFont
         int boundsWidth = (int) (bounds.getWidth());
         int boundsHeight = (int) (bounds.getHeight());
 
-        BufferedImage charImage = GraphicsUtilities.createTranslucentCompatibleImage(boundsWidth * 4, baseCharHeight);
+        // INT_ARGB, so its pixels can be scanned and copied as an int[]. At the
+        // rendering size : the drawn size may be scaled (see setSize)
+        BufferedImage charImage = new BufferedImage(boundsWidth * 4, glyphsCharHeight, BufferedImage.TYPE_INT_ARGB);
 
         Graphics2D charGraphics = charImage.createGraphics();
 
@@ -202,6 +312,7 @@ public class GlFont
 
         Rectangle2D defaultBounds = new Rectangle2D.Float((charImage.getWidth() - boundsWidth) / 2, (charImage.getHeight() - boundsHeight) / 2, boundsWidth, boundsHeight);
 
+        Vector2i temp = new Vector2i(0, 0);
         charImage = minimizeImage(charImage, defaultBounds, temp, false, true);
 
         glyph.setyPrevAdvance(0);
@@ -234,62 +345,63 @@ public class GlFont
     {
         int bigWidth = big.getWidth();
         int bigHeight = big.getHeight();
+        int[] pixels = ((DataBufferInt) big.getRaster().getDataBuffer()).getData();
 
         int x1 = bigWidth;
         int y1 = bigHeight;
+        int x2 = -1;
+        int y2 = -1;
 
-        int[] pixel = new int[4];
-
-        for (int i = 0; i < bigWidth; i++)
+        // One pass over the rows : the first opaque pixel from the left, then
+        // from the right, only looking at the columns not covered yet
+        for (int j = 0; j < bigHeight; j++)
         {
-            for (int j = 0; j < bigHeight; j++)
+            int row = j * bigWidth;
+            int left = row;
+            int end = row + bigWidth;
+
+            while (left < end && pixels[left] == 0)
             {
-                big.getRaster().getPixel(i, j, pixel);
+                left++;
+            }
 
-                if (sum(pixel) != 0)
-                {
-                    if (i < x1)
-                    {
-                        x1 = i;
-                    }
+            if (left == end)
+            {
+                continue;
+            }
 
-                    if (j < y1)
-                    {
-                        y1 = j;
-                    }
-                }
+            if (y1 == bigHeight)
+            {
+                y1 = j;
             }
-        }
 
-        int x2 = x1;
-        int y2 = y1;
+            y2 = j;
 
-        for (int i = bigWidth - 1; i >= x1; i--)
-        {
-            for (int j = bigHeight - 1; j >= y1; j--)
+            if (left - row < x1)
             {
-                big.getRaster().getPixel(i, j, pixel);
+                x1 = left - row;
+            }
 
-                if (sum(pixel) != 0)
-                {
-                    if (i > x2)
-                    {
-                        x2 = i;
-                    }
+            int right = end - 1;
+            int stop = row + Math.max(left - row, x2);
 
-                    if (j > y2)
-                    {
-                        y2 = j;
-                    }
-                }
+            while (right > stop && pixels[right] == 0)
+            {
+                right--;
+            }
+
+            if (right - row > x2)
+            {
+                x2 = right - row;
             }
         }
 
-        if (x1 == x2 || y1 == y2)
+        if (x2 < 0)
         {
-            BufferedImage little = GraphicsUtilities.createTranslucentCompatibleImage((int) defaultBounds.getWidth(), (int) defaultBounds.getHeight());
+            pos.setX((int) defaultBounds.getX());
+            pos.setY((int) defaultBounds.getY());
 
-            return little;
+            return new BufferedImage((int) defaultBounds.getWidth(), (int) defaultBounds.getHeight(), BufferedImage.TYPE_INT_ARGB);
         }
         else
         {
@@ -326,54 +438,98 @@ public class GlFont
             x2 += 1;
             y2 += 1;
 
-            BufferedImage little = GraphicsUtilities.createTranslucentCompatibleImage(x2 - x1, y2 - y1);
+            BufferedImage little = new BufferedImage(x2 - x1, y2 - y1, BufferedImage.TYPE_INT_ARGB);
+            int[] littlePixels = ((DataBufferInt) little.getRaster().getDataBuffer()).getData();
+            int littleWidth = x2 - x1;
 
-            Graphics2D littleGraphics = little.createGraphics();
+            // The bounds may have been extended out of the big image
+            int fromX = Math.max(x1, 0);
+            int toX = Math.min(x2, bigWidth);
 
-            littleGraphics.drawImage(big, 0, 0, little.getWidth(), little.getHeight(), x1, y1, x2, y2, null);
-            littleGraphics.dispose();
+            for (int j = Math.max(y1, 0); j < Math.min(y2, bigHeight); j++)
+            {
+                System.arraycopy(pixels, j * bigWidth + fromX, littlePixels, (j - y1) * littleWidth + fromX - x1, toX - fromX);
+            }
 
             return little;
         }
     }
 
     /**
-     * Sums the elements of the given array.
-     * 
-     * @param array The array to be computed.
+     * Draws a string.
+     *
+     * @param str The string to be drawn.
+     * @param x The drawing X position.
+     * @param y The drawing Y position.
+     * @param drawer The drawer to use to render the string.
+     */
+    public void drawString(String str, int x, int y, Drawer drawer)
+    {
+        getRun(str, drawer).draw(drawer, x, y);
+    }
+
+    /**
+     * Gets the laid out version of a string, from the run cache or by laying
+     * it out.
      *
-     * @return The sum value of the array elements.
+     * @param str The string to be drawn.
+     * @param drawer The drawer the string will be drawn with.
+     *
+     * @return The glyph run of the string.
      */
-    private static int sum(int[] array)
+    private GlyphRun getRun(String str, Drawer drawer)
     {
-        int sum = 0;
-        for (int i = 0; i < array.length; i++)
+        GlyphRun run;
+
+        synchronized (runs)
+        {
+            run = runs.get(str);
+        }
+
+        if (run != null && run.isValid(glyphs.getEvictions()))
+        {
+            return run;
+        }
+
+        run = layout(str, drawer);
+
+        // A page evicted while laying it out may hold its first glyphs, they
+        // would be drawn with the glyphs uploaded over them
+        for (int i = 1; i < MAX_LAYOUTS && !run.isValid(glyphs.getEvictions()); i++)
+        {
+            run = layout(str, drawer);
+        }
+
+        // Still invalid if the string has more glyphs than the pages can hold
+        if (run.isValid(glyphs.getEvictions()))
         {
-            sum += array[i];
+            synchronized (runs)
+            {
+                runs.put(str, run);
+            }
         }
 
-        return sum;
+        return run;
     }
 
     /**
-     * Draws a string.
+     * Lays a string out : parses its color codes, and finds where each glyph
+     * goes, uploading them if needed.
      *
-     * @param str The string to be drawn.
-     * @param x The drawing X position.
-     * @param y The drawing Y position.
-     * @param drawer The drawer to use to render the string.
+     * @param str The string to lay out.
+     * @param drawer The drawer the string will be drawn with.
+     *
+     * @return The glyph run of the string.
      */
-    public void drawString(String str, int x, int y, Drawer drawer)
+    private GlyphRun layout(String str, Drawer drawer)
     {
-        Vector2i pos = new Vector2i(x, y);
+        GlyphRun run = new GlyphRun(glyphs.getEvictions());
+        Vector2i pos = new Vector2i(0, 0);
 
         char[] charArray = str.toCharArray();
 
-        drawer.pushMatrix();
-
-        Color color = drawer.getColor();
-
-        lastTranslateX = 0;
+        Color color = null;
+        int lineShift = 0;
 
         for (int i = 0; i < charArray.length; i++)
         {
@@ -386,28 +542,31 @@ public class GlFont
                     if (i == 0 || charArray[i - 1] != '\\')
                     {
                         // Parse color code.
-                        String colorString = str.substring(i + 1);
+                        String colorString;
 
-                        int skippedChars = 0;
-                        if (colorString.startsWith("("))
+                        if (charArray[i + 1] == '(')
                         {
-                            colorString = colorString.substring(1, colorString.indexOf(')'));
-                            skippedChars = colorString.length() + 2;
+                            int end = str.indexOf(')', i + 2);
+
+                            if (end == -1)
+                                end = charArray.length;
+
+                            colorString = str.substring(i + 2, end);
+                            i = end;
                         }
                         else
                         {
-                            skippedChars = 1;
-                            colorString = colorString.substring(0, 1);
+                            colorString = str.substring(i + 1, i + 2);
+                            i++;
                         }
 
                         Color newColor = Color.valueOf(colorString);
 
                         if (newColor != null)
                         {
-                            drawer.setColor(newColor);
+                            color = newColor;
                         }
 
-                        i += skippedChars;
                         continue;
                     }
                 }
@@ -420,14 +579,33 @@ public class GlFont
                 }
             }
 
-            drawChar(ch, pos, x, y, i, drawer);
-        }
+            int codePoint = ch;
 
-        drawer.setColor(color);
+            if (Character.isHighSurrogate(ch) && i + 1 < charArray.length && Character.isLowSurrogate(charArray[i + 1]))
+            {
+                codePoint = Character.toCodePoint(ch, charArray[++i]);
+            }
 
-        lastTranslateX = 0;
+            if (shouldTryRendering(codePoint))
+            {
+                Glyph glyph = glyphs.getResident(codePoint, drawer);
 
-        drawer.popMatrix();
+                if (glyph != null)
+                {
+                    // We don't want to apply glyph.xPrevAdvance for the first character of a line.
+                    if (pos.getX() == 0)
+                    {
+                        lineShift = -scaled(glyph.getxPrevAdvance());
+                    }
+
+                    run.add(pos.getX() + lineShift + scaled(glyph.getxPrevAdvance()), pos.getY() + scaled(glyph.getyPrevAdvance()), scaled(glyph.getWidth()), scaled(glyph.getHeight()), glyph.getTexture(), glyph.getIcon(), color);
+                }
+            }
+
+            addCharSize(codePoint, pos, 0, 0);
+        }
+
+        return run;
     }
 
     /*
@@ -437,147 +615,192 @@ public class GlFont
 
     public int getStringWidth(String str)
     {
-        Vector2i pos = new Vector2i(0, 0);
-        int width = 0;
-        String[] lines = str.split("\n");
+        return measure(str)[0];
+    }
+
+    public Rectangle2D getStringBounds(String str, int x, int y)
+    {
+        int[] size = measure(str);
+
+        return new Rectangle2D.Float(x, y, size[0], size[1] * baseCharHeight);
+    }
+
+    /**
+     * Measures a string, using the measure cache.
+     *
+     * @param str The string to measure.
+     *
+     * @return The string width and its number of lines. Must not be modified.
+     */
+    private int[] measure(String str)
+    {
+        int[] size;
 
-        for (int i = 0; i < lines.length; i++)
+        synchronized (sizes)
         {
-            pos.setX(0);
-            pos.setY(0);
+            size = sizes.get(str);
+        }
 
-            char[] line = lines[i].toCharArray();
+        if (size == null)
+        {
+            size = new int[] {computeWidth(str), countLines(str)};
 
-            for (int j = 0; j < line.length; j++)
+            synchronized (sizes)
             {
-                char ch = line[j];
+                sizes.put(str, size);
+            }
+        }
 
-                if (j == 0)
-                {
-                    if (shouldTryRendering(ch))
-                    {
-                        Glyph glyph = glyphs.get(ch);
-                        pos.add(-glyph.getxPrevAdvance(), 0);
-                    }
-                }
+        return size;
+    }
 
-                if (j != line.length - 1)
+    /**
+     * Computes the width of the widest line of a string, in one pass and
+     * without allocating.
+     *
+     * @param str The string to measure.
+     *
+     * @return The width of the string.
+     */
+    private int computeWidth(String str)
+    {
+        int length = str.length();
+        int width = 0;
+        int x = 0;
+        boolean lineStart = true;
+
+        for (int i = 0; i < length; i++)
+        {
+            char ch = str.charAt(i);
+
+            if (ch == '\n')
+            {
+                x = 0;
+                lineStart = true;
+
+                continue;
+            }
+
+            if (i != length - 1 && str.charAt(i + 1) != '\n')
+            {
+                if (ch == '§')
                 {
-                    if (ch == '§')
+                    if (i == 0 || str.charAt(i - 1) != '\\')
                     {
-                        if (j == 0 || line[j - 1] != '\\')
+                        // Skip color code.
+                        if (str.charAt(i + 1) == '(')
                         {
-                            // Parse color code.
-                            String colorString = str.substring(j + 1);
-
-                            int skippedChars = 0;
-                            if (colorString.startsWith("("))
-                            {
-                                colorString = colorString.substring(1, colorString.indexOf(')'));
-                                skippedChars = colorString.length() + 2;
-                            }
-                            else
-                            {
-                                skippedChars = 1;
-                                colorString = colorString.substring(0, 1);
-                            }
-
-                            j += skippedChars;
-                            continue;
+                            int end = str.indexOf(')', i + 2);
+                            i = end == -1 ? length : end;
                         }
-                    }
-                    else if (ch == '\\')
-                    {
-                        if (line[j + 1] == '§')
+                        else
                         {
-                            continue;
+                            i++;
                         }
+
+                        continue;
+                    }
+                }
+                else if (ch == '\\')
+                {
+                    if (str.charAt(i + 1) == '§')
+                    {
+                        continue;
                     }
                 }
+            }
+
+            int codePoint = ch;
 
-                addCharSize(ch, pos, 0, 0);
+            if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1)))
+            {
+                codePoint = Character.toCodePoint(ch, str.charAt(++i));
+            }
+
+            // The first character of a line isn't moved by its xPrevAdvance
+            if (lineStart)
+            {
+                lineStart = false;
 
-                if (pos.getX() > width)
+                if (shouldTryRendering(codePoint))
                 {
-                    width = pos.getX();
+                    Glyph glyph = glyphs.get(codePoint);
+
+                    if (glyph != null)
+                        x -= scaled(glyph.getxPrevAdvance());
                 }
             }
+
+            x += getAdvance(codePoint);
+
+            if (x > width)
+            {
+                width = x;
+            }
         }
 
         return width;
     }
 
-    public Rectangle2D getStringBounds(String str, int x, int y)
+    /**
+     * Counts the lines of a string, ignoring the trailing line breaks.
+     *
+     * @param str The string.
+     *
+     * @return Its number of lines.
+     */
+    private static int countLines(String str)
     {
-        Vector2i pos = new Vector2i(0, 0);
-        int width = 0;
-        String[] lines = str.split("\n");
-        int height = lines.length * baseCharHeight;
-
-        for (int i = 0; i < lines.length; i++)
+        if (str.length() == 0)
         {
-            pos.setX(0);
-            pos.setY(0);
+            return 1;
+        }
 
-            char[] line = lines[i].toCharArray();
+        int end = str.length();
 
-            for (int j = 0; j < line.length; j++)
-            {
-                char ch = line[j];
-
-                if (j == 0)
-                {
-                    if (shouldTryRendering(ch))
-                    {
-                        Glyph glyph = glyphs.get(ch);
-                        pos.add(-glyph.getxPrevAdvance(), 0);
-                    }
-                }
+        while (end > 0 && str.charAt(end - 1) == '\n')
+        {
+            end--;
+        }
 
-                if (j != line.length - 1)
-                {
-                    if (ch == '§')
-                    {
-                        if (j == 0 || line[j - 1] != '\\')
-                        {
-                            // Parse color code.
-                            String colorString = str.substring(j + 1);
-
-                            int skippedChars = 0;
-                            if (colorString.startsWith("("))
-                            {
-                                colorString = colorString.substring(1, colorString.indexOf(')'));
-                                skippedChars = colorString.length() + 2;
-                            }
-                            else
-                            {
-                                skippedChars = 1;
-                                colorString = colorString.substring(0, 1);
-                            }
-
-                            j += skippedChars;
-                            continue;
-                        }
-                    }
-                    else if (ch == '\\')
-                    {
-                        if (line[j + 1] == '§')
-                        {
-                            continue;
-                        }
-                    }
-                }
+        if (end == 0)
+        {
+            return 0;
+        }
 
-                addCharSize(ch, pos, x, y);
+        int lines = 1;
 
-                if (pos.getX() > width)
-                {
-                    width = pos.getX();
-                }
+        for (int i = 0; i < end; i++)
+        {
+            if (str.charAt(i) == '\n')
+            {
+                lines++;
             }
         }
 
-        return new Rectangle2D.Float(x, y, width, height);
+        return lines;
+    }
+
+    /**
+     * @param ch The code point of a character.
+     *
+     * @return How far the next character is drawn after this one, at the
+     *         drawn size.
+     */
+    public int getAdvance(int ch)
+    {
+        if (ch == ' ')
+        {
+            return (int) (fontSize * 0.3f);
+        }
+        else if (ch == '\t')
+        {
+            return (int) (fontSize * 1.2f);
+        }
+
+        Glyph glyph = glyphs.get(ch);
+
+        return glyph != null ? scaled(glyph.getxAdvance()) : 0;
     }
 
     public int getFontSize()
@@ -586,21 +809,38 @@ public class GlFont
     }
 
     public void drawChar(char ch, Vector2i pos, int origX, int origY, int index, Drawer drawer)
+    {
+        drawChar((int) ch, pos, origX, origY, drawer);
+    }
+
+    /**
+     * Draws a character, uploading its glyph if needed.
+     *
+     * @param ch The code point of the character.
+     * @param pos The drawing position, moved after the character.
+     * @param origX The X position of the start of the lines.
+     * @param origY The Y position of the first line.
+     * @param drawer The drawer to use to render the character.
+     */
+    private void drawChar(int ch, Vector2i pos, int origX, int origY, Drawer drawer)
     {
         if (shouldTryRendering(ch))
         {
-            Glyph glyph = glyphs.get(ch);
+            Glyph glyph = glyphs.getResident(ch, drawer);
             if (glyph == null)
+            {
+                addCharSize(ch, pos, origX, origY);
                 return;
+            }
 
             // We don't want to apply glyph.xPrevAdvance for the first character of a line.
             if (pos.getX() == origX)
             {
                 drawer.translate(-lastTranslateX, 0);
-                drawer.translate(lastTranslateX = -glyph.getxPrevAdvance(), 0);
+                drawer.translate(lastTranslateX = -scaled(glyph.getxPrevAdvance()), 0);
             }
 
-            drawer.drawTexture(pos.getX() + glyph.getxPrevAdvance(), pos.getY() + glyph.getyPrevAdvance(), glyph.getWidth(), glyph.getHeight(), fontTexture, glyph.getIcon());
+            drawer.drawTexture(pos.getX() + scaled(glyph.getxPrevAdvance()), pos.getY() + scaled(glyph.getyPrevAdvance()), scaled(glyph.getWidth()), scaled(glyph.getHeight()), glyph.getTexture(), glyph.getIcon());
         }
 
         addCharSize(ch, pos, origX, origY);
@@ -609,7 +849,7 @@ public class GlFont
     /**
      * @return {@code true} if there is any glyph registered for this character.
      */
-    protected boolean shouldTryRendering(char ch)
+    protected boolean shouldTryRendering(int ch)
     {
         return ch != ' ' && ch != '\t' && ch != '\n';
     }
@@ -617,25 +857,16 @@ public class GlFont
     /**
      * @return
      */
-    protected void addCharSize(char ch, Vector2i vector, int origX, int origY)
+    protected void addCharSize(int ch, Vector2i vector, int origX, int origY)
     {
-        if (ch == ' ')
-        {
-            vector.add((int) (fontSize * 0.3f), 0);
-        }
-        else if (ch == '\t')
-        {
-            vector.add((int) (fontSize * 1.2f), 0);
-        }
-        else if (ch == '\n')
+        if (ch == '\n')
         {
             vector.setX(origX);
             vector.add(0, baseCharHeight);
         }
-        else if (glyphs.containsKey(ch))
+        else
         {
-            Glyph glyph = glyphs.get(ch);
-            vector.add(glyph.getxAdvance(), 0);
+            vector.add(getAdvance(ch), 0);
         }
     }
 
@@ -705,8 +936,16 @@ public class GlFont
         return new GlFont(chars, font);
     }
 
+    /**
+     * @return The AWT font rendering the glyphs.
+     */
+    Font getAwtFont()
+    {
+        return font;
+    }
+
     public void release()
     {
-        fontTexture.release();
+        glyphs.release();
     }
 }
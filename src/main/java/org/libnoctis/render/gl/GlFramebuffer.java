@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.nio.IntBuffer;
+import org.lwjgl.BufferUtils;
+
+
+import static org.lwjgl.opengl.EXTFramebufferObject.*;
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * An OpenGL Framebuffer
+ *
+ * <p>
+ *     A framebuffer rendering to a texture instead of the screen. While it is
+ *     bound, everything drawn goes into its texture, which can then be drawn
+ *     as any other texture using {@link #REGION} (the texture is upside-down
+ *     compared to the screen).
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class GlFramebuffer
+{
+    /**
+     * The region to use to draw the texture of a framebuffer with the right
+     * orientation.
+     */
+    public static final TextureRegion REGION = new TextureRegion(0.0f, 1.0f, 1.0f, 0.0f);
+
+    /**
+     * This framebuffer ID for OpenGL.
+     */
+    private int framebufferId;
+
+    /**
+     * The texture this framebuffer renders to.
+     */
+    private GlTexture texture;
+
+    /**
+     * The framebuffer bound before this one, restored by {@link #unbind()}.
+     */
+    private int previousFramebuffer;
+
+    /**
+     * The viewport before binding this framebuffer, restored by
+     * {@link #unbind()}.
+     */
+    private final IntBuffer previousViewport = BufferUtils.createIntBuffer(16);
+
+    /**
+     * An OpenGL Framebuffer
+     *
+     * @param width The width of the framebuffer texture.
+     * @param height The height of the framebuffer texture.
+     */
+    public GlFramebuffer(int width, int height)
+    {
+        texture = new GlTexture(width, height);
+        framebufferId = glGenFramebuffersEXT();
+
+        int previous = glGetInteger(GL_FRAMEBUFFER_BINDING_EXT);
+
+        glBindFramebufferEXT(GL_FRAMEBUFFER_EXT, framebufferId);
+        glFramebufferTexture2DEXT(GL_FRAMEBUFFER_EXT, GL_COLOR_ATTACHMENT0_EXT, GlTexture.TARGET, texture.getId(), 0);
+
+        int status = glCheckFramebufferStatusEXT(GL_FRAMEBUFFER_EXT);
+
+        glBindFramebufferEXT(GL_FRAMEBUFFER_EXT, previous);
+
+        if (status != GL_FRAMEBUFFER_COMPLETE_EXT)
+        {
+            release();
+            throw new IllegalStateException("Framebuffer is not complete (status 0x" + Integer.toHexString(status) + ")");
+        }
+    }
+
+    /**
+     * Binds this framebuffer, everything will be rendered to its texture
+     * until {@link #unbind()} is called.
+     */
+    public void bind()
+    {
+        previousFramebuffer = glGetInteger(GL_FRAMEBUFFER_BINDING_EXT);
+        glGetInteger(GL_VIEWPORT, previousViewport);
+
+        glBindFramebufferEXT(GL_FRAMEBUFFER_EXT, framebufferId);
+        glViewport(0, 0, getWidth(), getHeight());
+    }
+
+    /**
+     * Restores the framebuffer and the viewport that were used before
+     * {@link #bind()}.
+     */
+    public void unbind()
+    {
+        glBindFramebufferEXT(GL_FRAMEBUFFER_EXT, previousFramebuffer);
+        glViewport(previousViewport.get(0), previousViewport.get(1), previousViewport.get(2), previousViewport.get(3));
+    }
+
+    /**
+     * Copies the texture of this framebuffer to the given rectangle of the
+     * current one, without blending.
+     *
+     * @param x The x position of the rectangle.
+     * @param y The y position of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     */
+    public void blit(int x, int y, int width, int height)
+    {
+        boolean blend = glIsEnabled(GL_BLEND);
+
+        glDisable(GL_BLEND);
+        glColor4f(1.0f, 1.0f, 1.0f, 1.0f);
+
+        texture.bind();
+        glBegin(GL_QUADS);
+        {
+            glTexCoord2f(REGION.getMinU(), REGION.getMinV());
+            glVertex2i(x, y);
+            glTexCoord2f(REGION.getMinU(), REGION.getMaxV());
+            glVertex2i(x, y + height);
+            glTexCoord2f(REGION.getMaxU(), REGION.getMaxV());
+            glVertex2i(x + width, y + height);
+            glTexCoord2f(REGION.getMaxU(), REGION.getMinV());
+            glVertex2i(x + width, y);
+        }
+        glEnd();
+        GlTexture.bindNone();
+
+        if (blend)
+        {
+            glEnable(GL_BLEND);
+        }
+    }
+
+    /**
+     * @return The texture this framebuffer renders to.
+     */
+    public GlTexture getTexture()
+    {
+        return texture;
+    }
+
+    /**
+     * @return The width of this framebuffer.
+     */
+    public int getWidth()
+    {
+        return texture.getDimensions().getWidth();
+    }
+
+    /**
+     * @return The height of this framebuffer.
+     */
+    public int getHeight()
+    {
+        return texture.getDimensions().getHeight();
+    }
+
+    /**
+     * Removes this framebuffer and its texture from the graphic memory.
+     */
+    public void release()
+    {
+        glDeleteFramebuffersEXT(framebufferId);
+        texture.release();
+    }
+}
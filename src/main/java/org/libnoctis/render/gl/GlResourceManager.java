@@ -0,0 +1,429 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.lwjgl.BufferUtils;
+
+
+import static org.lwjgl.opengl.GL11.glDeleteLists;
+import static org.lwjgl.opengl.GL11.glDeleteTextures;
+
+/**
+ * The GL Resource Manager
+ *
+ * <p>
+ *     Keeps track of the textures and display lists in the graphic memory,
+ *     and of their estimated size. Resources are deleted by the frame thread
+ *     (that owns the GL context) during {@link #update}, when they are
+ *     released or when their owner is garbage collected.
+ * </p>
+ *
+ * <p>
+ *     Caches can register their textures with {@link #cache}. When the
+ *     estimated memory used goes over the budget, the least recently used
+ *     cached textures that aren't retained by anything else are evicted.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public final class GlResourceManager
+{
+    /**
+     * Default memory budget, in bytes.
+     */
+    public static final long DEFAULT_BUDGET = 128L * 1024 * 1024;
+
+    /**
+     * Estimated size of a display list, in bytes.
+     */
+    public static final long DISPLAY_LIST_BYTES = 4 * 1024;
+
+    /**
+     * The memory budget, in bytes.
+     */
+    private static volatile long budget = DEFAULT_BUDGET;
+
+    /**
+     * The estimated memory used by the tracked resources, in bytes.
+     */
+    private static long usedBytes;
+
+    /**
+     * The tracked textures.
+     */
+    private static final Set<Resource> textures = new HashSet<Resource>();
+
+    /**
+     * The tracked display lists, by ID.
+     */
+    private static final Map<Integer, Resource> lists = new HashMap<Integer, Resource>();
+
+    /**
+     * The cached textures, the least recently used first.
+     */
+    private static final LinkedHashMap<GlTexture, EvictionListener> cached = new LinkedHashMap<GlTexture, EvictionListener>(16, 0.75f, true);
+
+    /**
+     * Where the resources whose owner was garbage collected arrive.
+     */
+    private static final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+    /**
+     * Textures whose last reference was released, waiting to be disposed.
+     */
+    private static final ConcurrentLinkedQueue<GlTexture> released = new ConcurrentLinkedQueue<GlTexture>();
+
+    /**
+     * Texture IDs waiting to be deleted.
+     */
+    private static final ConcurrentLinkedQueue<Integer> deletedTextures = new ConcurrentLinkedQueue<Integer>();
+
+    /**
+     * Display list IDs waiting to be deleted.
+     */
+    private static final ConcurrentLinkedQueue<Integer> deletedLists = new ConcurrentLinkedQueue<Integer>();
+
+    /**
+     * Buffer used to delete many textures at once.
+     */
+    private static IntBuffer deleteBuffer = BufferUtils.createIntBuffer(64);
+
+    private GlResourceManager()
+    {
+    }
+
+    /**
+     * @return The memory budget, in bytes.
+     */
+    public static long getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * Sets the memory budget. Over it, cached textures are evicted.
+     *
+     * @param budget The new budget, in bytes.
+     */
+    public static void setBudget(long budget)
+    {
+        GlResourceManager.budget = budget;
+    }
+
+    /**
+     * @return The estimated memory used by textures and display lists, in
+     *         bytes.
+     */
+    public static long getUsedBytes()
+    {
+        synchronized (GlResourceManager.class)
+        {
+            return usedBytes;
+        }
+    }
+
+    /**
+     * Tracks a new texture.
+     *
+     * @param texture The texture owning the ID.
+     * @param id The OpenGL texture ID.
+     * @param bytes The estimated size of the texture.
+     *
+     * @return The resource of the texture.
+     */
+    static Resource registerTexture(GlTexture texture, int id, long bytes)
+    {
+        Resource resource = new Resource(texture, id, bytes, false);
+
+        synchronized (GlResourceManager.class)
+        {
+            textures.add(resource);
+            usedBytes += bytes;
+        }
+
+        return resource;
+    }
+
+    /**
+     * Changes the estimated size of a resource.
+     *
+     * @param resource The resource.
+     * @param bytes Its new size, in bytes.
+     */
+    static synchronized void resize(Resource resource, long bytes)
+    {
+        if (resource.deleted)
+            return;
+
+        usedBytes += bytes - resource.bytes;
+        resource.bytes = bytes;
+    }
+
+    /**
+     * Schedules the deletion of a texture.
+     *
+     * @param resource The resource of the texture.
+     */
+    static synchronized void deleteTexture(Resource resource)
+    {
+        if (textures.remove(resource))
+            delete(resource);
+    }
+
+    /**
+     * Schedules the disposal of a texture whose last reference was released.
+     *
+     * @param texture The released texture.
+     */
+    static void release(GlTexture texture)
+    {
+        released.add(texture);
+    }
+
+    /**
+     * Tracks a display list, which is deleted when its owner is garbage
+     * collected.
+     *
+     * @param owner The object using the display list.
+     * @param list The display list ID.
+     */
+    public static synchronized void trackList(Object owner, int list)
+    {
+        lists.put(list, new Resource(owner, list, DISPLAY_LIST_BYTES, true));
+        usedBytes += DISPLAY_LIST_BYTES;
+    }
+
+    /**
+     * Schedules the deletion of a display list.
+     *
+     * @param list The display list ID.
+     */
+    public static synchronized void deleteList(int list)
+    {
+        Resource resource = lists.remove(list);
+
+        if (resource != null)
+            delete(resource);
+        else
+            deletedLists.add(list);
+    }
+
+    /**
+     * Registers a texture kept by a cache, so it can be evicted when the
+     * memory budget is exceeded. The cache holds the first reference of the
+     * texture; it is only evicted if nothing else retained it.
+     *
+     * @param texture The cached texture.
+     * @param listener Called when the texture is evicted, to remove it from
+     *            the cache.
+     */
+    public static synchronized void cache(GlTexture texture, EvictionListener listener)
+    {
+        cached.put(texture, listener);
+    }
+
+    /**
+     * Marks a cached texture as used now, so it is evicted after the others.
+     *
+     * @param texture The used texture.
+     */
+    public static synchronized void touch(GlTexture texture)
+    {
+        cached.get(texture);
+    }
+
+    /**
+     * Disposes the released and garbage collected resources, evicts the
+     * cached textures if the budget is exceeded, and deletes everything that
+     * needs to be. Called every frame from the frame thread.
+     */
+    public static void update()
+    {
+        disposeReleased();
+
+        Reference<?> reference;
+
+        while ((reference = collected.poll()) != null)
+        {
+            Resource resource = (Resource) reference;
+
+            synchronized (GlResourceManager.class)
+            {
+                // The ID of a collected list may have been reused by a newer one
+                if (resource.list ? lists.get(resource.id) == resource && lists.remove(resource.id) != null : textures.remove(resource))
+                    delete(resource);
+            }
+        }
+
+        evict();
+        deletePending();
+    }
+
+    /**
+     * Disposes the textures whose last reference was released.
+     */
+    private static void disposeReleased()
+    {
+        GlTexture texture;
+
+        while ((texture = released.poll()) != null)
+        {
+            synchronized (GlResourceManager.class)
+            {
+                cached.remove(texture);
+            }
+
+            texture.dispose();
+        }
+    }
+
+    /**
+     * Evicts the least recently used cached textures until the used memory
+     * is under the budget. Stops as soon as an eviction frees nothing, so the
+     * textures not accounted on their own (like the regions of a page still in
+     * use) aren't all thrown away every frame.
+     */
+    private static void evict()
+    {
+        long used;
+
+        while ((used = getUsedBytes()) > budget)
+        {
+            GlTexture victim = null;
+            EvictionListener listener = null;
+
+            synchronized (GlResourceManager.class)
+            {
+                for (Iterator<Map.Entry<GlTexture, EvictionListener>> iterator = cached.entrySet().iterator(); iterator.hasNext();)
+                {
+                    Map.Entry<GlTexture, EvictionListener> entry = iterator.next();
+
+                    // Only the cache holds it
+                    if (entry.getKey().getReferenceCount() == 1)
+                    {
+                        victim = entry.getKey();
+                        listener = entry.getValue();
+                        iterator.remove();
+
+                        break;
+                    }
+                }
+            }
+
+            if (victim == null)
+                return;
+
+            listener.evicted(victim);
+            victim.release();
+
+            disposeReleased();
+
+            if (getUsedBytes() >= used)
+                return;
+        }
+    }
+
+    /**
+     * Deletes the textures and display lists waiting to be.
+     */
+    private static void deletePending()
+    {
+        Integer id;
+
+        while (!deletedTextures.isEmpty())
+        {
+            deleteBuffer.clear();
+
+            while (deleteBuffer.hasRemaining() && (id = deletedTextures.poll()) != null)
+                deleteBuffer.put(id);
+
+            deleteBuffer.flip();
+            glDeleteTextures(deleteBuffer);
+        }
+
+        while ((id = deletedLists.poll()) != null)
+            glDeleteLists(id, 1);
+    }
+
+    /**
+     * Marks a resource as deleted and queues its ID for deletion. Must be
+     * called with the lock held.
+     *
+     * @param resource The resource to delete.
+     */
+    private static void delete(Resource resource)
+    {
+        resource.clear();
+        resource.deleted = true;
+        usedBytes -= resource.bytes;
+
+        if (resource.list)
+            deletedLists.add(resource.id);
+        else
+            deletedTextures.add(resource.id);
+    }
+
+    /**
+     * Called when a cached texture is evicted.
+     */
+    public interface EvictionListener
+    {
+        /**
+         * Removes the given texture from the cache. Called from the frame
+         * thread, right before the cache reference is released.
+         *
+         * @param texture The evicted texture.
+         */
+        void evicted(GlTexture texture);
+    }
+
+    /**
+     * A texture or display list in the graphic memory, enqueued when its
+     * owner is garbage collected.
+     */
+    static final class Resource extends PhantomReference<Object>
+    {
+        private final int id;
+        private final boolean list;
+        private long bytes;
+        private boolean deleted;
+
+        Resource(Object owner, int id, long bytes, boolean list)
+        {
+            super(owner, collected);
+
+            this.id = id;
+            this.bytes = bytes;
+            this.list = list;
+        }
+    }
+}
@@ -19,16 +19,30 @@
 package org.libnoctis.render.gl;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.imageio.ImageIO;
+import org.libnoctis.render.Drawer;
 import org.libnoctis.util.Dimension;
 import org.lwjgl.BufferUtils;
 
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL30.GL_R8;
+import static org.lwjgl.opengl.GL33.GL_TEXTURE_SWIZZLE_A;
+import static org.lwjgl.opengl.GL33.GL_TEXTURE_SWIZZLE_B;
+import static org.lwjgl.opengl.GL33.GL_TEXTURE_SWIZZLE_G;
+import static org.lwjgl.opengl.GL33.GL_TEXTURE_SWIZZLE_R;
 
 /**
  * An OpenGL Texture
@@ -51,6 +65,40 @@ public class GlTexture
 
     private Dimension dimensions;
 
+    /**
+     * The internal format of this texture : {@code GL_RGBA}, or a single
+     * channel format (see {@link GlCaps#getAlphaTextureFormat()}).
+     */
+    private int internalFormat = GL_RGBA;
+
+    /**
+     * The number of references to this texture, it is deleted when it goes
+     * down to zero.
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * The tracked resource of this texture ID, null if this texture doesn't
+     * own its ID.
+     */
+    private GlResourceManager.Resource resource;
+
+    /**
+     * The biggest image, in pixels, whose upload buffers are kept for the next
+     * uploads.
+     */
+    private static final int MAX_STAGING_PIXELS = 1024 * 1024;
+
+    /**
+     * The native buffer pixels are copied into before being uploaded.
+     */
+    private static ByteBuffer staging;
+
+    /**
+     * The array images not stored as ARGB ints are read into.
+     */
+    private static int[] scratch;
+
     /**
      * An OpenGL Texture.
      *
@@ -71,10 +119,79 @@ public class GlTexture
     {
         dimensions = new Dimension(image.getWidth(), image.getHeight());
         textureId = glGenTextures();
+        resource = GlResourceManager.registerTexture(this, textureId, estimateBytes(image.getWidth(), image.getHeight()));
 
         upload(image);
     }
 
+    /**
+     * An empty OpenGL Texture, its content is undefined until something is
+     * uploaded to it.
+     *
+     * @param width The texture width.
+     * @param height The texture height.
+     */
+    public GlTexture(int width, int height)
+    {
+        this(width, height, GL_RGBA);
+    }
+
+    /**
+     * An empty OpenGL Texture, its content is undefined until something is
+     * uploaded to it.
+     *
+     * <p>
+     * Single channel textures ({@code GL_ALPHA8}, or {@code GL_R8} read as
+     * white with the red channel as alpha) only keep the alpha of the uploaded
+     * images, and are drawn in the color of the drawer.
+     * </p>
+     *
+     * @param width The texture width.
+     * @param height The texture height.
+     * @param internalFormat {@code GL_RGBA}, {@code GL_ALPHA8} or
+     *            {@code GL_R8}.
+     */
+    public GlTexture(int width, int height, int internalFormat)
+    {
+        if (internalFormat != GL_RGBA && internalFormat != GL_ALPHA8 && internalFormat != GL_R8)
+            throw new IllegalArgumentException("Unsupported texture format " + internalFormat);
+
+        this.internalFormat = internalFormat;
+
+        dimensions = new Dimension(width, height);
+        textureId = glGenTextures();
+        resource = GlResourceManager.registerTexture(this, textureId, estimateBytes(width, height, internalFormat));
+
+        bind();
+
+        glTexImage2D(TARGET, 0, internalFormat, width, height, 0, getPixelFormat(), GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        setupParameters();
+
+        if (internalFormat == GL_R8)
+        {
+            // Read as (1, 1, 1, red), like an alpha texture
+            glTexParameteri(TARGET, GL_TEXTURE_SWIZZLE_R, GL_ONE);
+            glTexParameteri(TARGET, GL_TEXTURE_SWIZZLE_G, GL_ONE);
+            glTexParameteri(TARGET, GL_TEXTURE_SWIZZLE_B, GL_ONE);
+            glTexParameteri(TARGET, GL_TEXTURE_SWIZZLE_A, GL_RED);
+        }
+
+        bindNone();
+    }
+
+    /**
+     * A texture using an already existing OpenGL texture (for example, a
+     * region of an atlas page).
+     *
+     * @param textureId The OpenGL texture ID.
+     * @param dimensions The texture size.
+     */
+    protected GlTexture(int textureId, Dimension dimensions)
+    {
+        this.textureId = textureId;
+        this.dimensions = dimensions;
+    }
+
     /**
      * Uploads the given image to the graphics memory.
      * 
@@ -82,37 +199,242 @@ public class GlTexture
      */
     public void upload(BufferedImage image)
     {
-        int[] pixels = new int[image.getWidth() * image.getHeight()];
-        image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+        if (isAlpha())
+            throw new IllegalStateException("Can't reallocate a single channel texture from an image");
 
-        ByteBuffer buffer = BufferUtils.createByteBuffer(pixels.length * 4);
+        dimensions = new Dimension(image.getWidth(), image.getHeight());
+
+        if (resource != null)
+            GlResourceManager.resize(resource, estimateBytes(image.getWidth(), image.getHeight()));
+
+        bind();
+
+        uploadImage(image, 0, 0, true);
+        setupParameters();
+
+        bindNone();
+    }
 
-        for (int y = 0; y < image.getHeight(); y++)
+    /**
+     * Uploads the given image to a part of this texture.
+     *
+     * @param image The image to be uploaded.
+     * @param x The X coordinate of the image in this texture, in pixels.
+     * @param y The Y coordinate of the image in this texture, in pixels.
+     */
+    public void upload(BufferedImage image, int x, int y)
+    {
+        if (isAlpha())
         {
-            for (int x = 0; x < image.getWidth(); x++)
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+            byte[] alpha = new byte[pixels.length];
+
+            for (int i = 0; i < pixels.length; i++)
             {
-                int pixel = pixels[y * image.getWidth() + x];
-                buffer.put((byte) ((pixel >> 16) & 0xff));
-                buffer.put((byte) ((pixel >> 8) & 0xff));
-                buffer.put((byte) ((pixel) & 0xff));
-                buffer.put((byte) ((pixel >> 24) & 0xff));
+                alpha[i] = (byte) (pixels[i] >>> 24);
             }
+
+            upload(alpha, width, height, x, y);
+
+            return;
         }
 
-        // DO NOT forget
-        buffer.flip();
+        bind();
+
+        uploadImage(image, x, y, false);
+
+        bindNone();
+    }
+
+    /**
+     * Uploads alpha pixels to a part of this single channel texture.
+     *
+     * @param alpha The alpha of the pixels, row by row.
+     * @param width The width of the uploaded pixels.
+     * @param height The height of the uploaded pixels.
+     * @param x The X coordinate of the pixels in this texture, in pixels.
+     * @param y The Y coordinate of the pixels in this texture, in pixels.
+     */
+    public void upload(byte[] alpha, int width, int height, int x, int y)
+    {
+        if (!isAlpha())
+            throw new IllegalStateException("Alpha pixels can only be uploaded to a single channel texture");
 
         bind();
 
-        glTexImage2D(TARGET, 0, GL_RGBA, image.getWidth(), image.getHeight(), 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+        uploadAlpha(alpha, width, height, x, y, getPixelFormat());
+
+        bindNone();
+    }
+
+    /**
+     * Uploads alpha pixels to the bound texture.
+     */
+    private static synchronized void uploadAlpha(byte[] alpha, int width, int height, int x, int y, int format)
+    {
+        ByteBuffer buffer = staging(width * height);
+        buffer.put(alpha, 0, width * height);
+        buffer.flip();
+
+        // Rows of single bytes aren't aligned on 4 bytes
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexSubImage2D(TARGET, 0, x, y, width, height, format, GL_UNSIGNED_BYTE, buffer);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+    }
+
+    /**
+     * @return {@code true} if this texture only has an alpha channel.
+     */
+    public boolean isAlpha()
+    {
+        return internalFormat != GL_RGBA;
+    }
 
+    /**
+     * @return The format of the pixels uploaded to this texture.
+     */
+    private int getPixelFormat()
+    {
+        switch (internalFormat)
+        {
+            case GL_ALPHA8:
+                return GL_ALPHA;
+            case GL_R8:
+                return GL_RED;
+            default:
+                return GL_RGBA;
+        }
+    }
+
+    /**
+     * Uploads the pixels of the given image to the bound texture.
+     *
+     * <p>
+     * {@link BufferedImage#TYPE_INT_ARGB} and
+     * {@link BufferedImage#TYPE_4BYTE_ABGR} images are copied as is from their
+     * backing array, and their pixel format is converted by OpenGL. Other
+     * images are read with {@link BufferedImage#getRGB}.
+     * </p>
+     *
+     * @param image The image to be uploaded.
+     * @param x The X coordinate of the image in the texture, in pixels.
+     * @param y The Y coordinate of the image in the texture, in pixels.
+     * @param allocate {@code true} to (re)allocate the whole texture with the
+     *            size of the image, {@code false} to only update a part of it.
+     */
+    private static synchronized void uploadImage(BufferedImage image, int x, int y, boolean allocate)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int pixels = width * height;
+
+        ByteBuffer buffer = staging(pixels * 4);
+        int format = GL_BGRA;
+        int type = GL_UNSIGNED_INT_8_8_8_8_REV;
+
+        if (isPacked(image, BufferedImage.TYPE_INT_ARGB, width))
+        {
+            buffer.asIntBuffer().put(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0, pixels);
+        }
+        else if (isPacked(image, BufferedImage.TYPE_4BYTE_ABGR, width * 4))
+        {
+            buffer.put(((DataBufferByte) image.getRaster().getDataBuffer()).getData(), 0, pixels * 4);
+            buffer.rewind();
+
+            // A, B, G, R bytes read as one packed RGBA int
+            format = GL_RGBA;
+            type = buffer.order() == ByteOrder.LITTLE_ENDIAN ? GL_UNSIGNED_INT_8_8_8_8 : GL_UNSIGNED_INT_8_8_8_8_REV;
+        }
+        else
+        {
+            if (scratch == null || scratch.length < pixels)
+                scratch = new int[pixels];
+
+            image.getRGB(0, 0, width, height, scratch, 0, width);
+            buffer.asIntBuffer().put(scratch, 0, pixels);
+
+            if (pixels > MAX_STAGING_PIXELS)
+                scratch = null;
+        }
+
+        if (allocate)
+            glTexImage2D(TARGET, 0, GL_RGBA, width, height, 0, format, type, buffer);
+        else
+            glTexSubImage2D(TARGET, 0, x, y, width, height, format, type, buffer);
+    }
+
+    /**
+     * @param image An image.
+     * @param type The wanted image type.
+     * @param stride The wanted scanline stride, in array elements.
+     *
+     * @return {@code true} if the image is of the given type and its pixels
+     *         are stored tightly at the start of its backing array.
+     */
+    private static boolean isPacked(BufferedImage image, int type, int stride)
+    {
+        if (image.getType() != type)
+            return false;
+
+        WritableRaster raster = image.getRaster();
+        SampleModel model = raster.getSampleModel();
+
+        if (raster.getParent() != null || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0 || raster.getDataBuffer().getOffset() != 0)
+            return false;
+
+        if (model instanceof SinglePixelPackedSampleModel)
+            return ((SinglePixelPackedSampleModel) model).getScanlineStride() == stride;
+
+        if (model instanceof ComponentSampleModel)
+            return ((ComponentSampleModel) model).getScanlineStride() == stride;
+
+        return false;
+    }
+
+    /**
+     * Gives a buffer to copy pixels into before uploading them. The same
+     * buffer is reused between uploads, unless it would be bigger than
+     * {@link #MAX_STAGING_PIXELS} pixels.
+     *
+     * @param size The needed size, in bytes.
+     *
+     * @return A native buffer, with its limit set to the given size.
+     */
+    private static ByteBuffer staging(int size)
+    {
+        if (size > MAX_STAGING_PIXELS * 4)
+        {
+            return BufferUtils.createByteBuffer(size);
+        }
+
+        if (staging == null || staging.capacity() < size)
+        {
+            int capacity = 4096;
+
+            while (capacity < size)
+                capacity <<= 1;
+
+            staging = BufferUtils.createByteBuffer(capacity);
+        }
+
+        staging.clear();
+        staging.limit(size);
+
+        return staging;
+    }
+
+    /**
+     * Sets the wrapping and filtering parameters of the bound texture.
+     */
+    private static void setupParameters()
+    {
         glTexParameteri(TARGET, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
         glTexParameteri(TARGET, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
 
         glTexParameteri(TARGET, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
         glTexParameteri(TARGET, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-        
-        bindNone();
     }
 
     /**
@@ -140,11 +462,81 @@ public class GlTexture
     }
 
     /**
-     * Removes this texture from the graphic memory and frees its ID.
+     * Adds a reference to this texture, so it isn't deleted until it is
+     * released one more time.
+     *
+     * @return This texture.
+     */
+    public GlTexture retain()
+    {
+        references.incrementAndGet();
+
+        return this;
+    }
+
+    /**
+     * Removes a reference to this texture. When the last one is released, the
+     * texture is removed from the graphic memory by the frame thread.
      */
     public void release()
     {
-        glDeleteTextures(textureId);
+        if (references.decrementAndGet() == 0)
+            GlResourceManager.release(this);
+    }
+
+    /**
+     * @return The number of references to this texture.
+     */
+    int getReferenceCount()
+    {
+        return references.get();
+    }
+
+    /**
+     * Frees what this texture uses, once its last reference was released.
+     * Called from the frame thread.
+     */
+    protected void dispose()
+    {
+        if (resource != null)
+            GlResourceManager.deleteTexture(resource);
+    }
+
+    /**
+     * Changes the memory accounted for this texture, when only a part of it
+     * is in use. Does nothing if this texture doesn't own its ID.
+     *
+     * @param bytes The new estimated size, in bytes.
+     */
+    void setEstimatedBytes(long bytes)
+    {
+        if (resource != null)
+            GlResourceManager.resize(resource, bytes);
+    }
+
+    /**
+     * @param width A texture width.
+     * @param height A texture height.
+     *
+     * @return The estimated size of a RGBA texture of the given size, in
+     *         bytes.
+     */
+    static long estimateBytes(int width, int height)
+    {
+        return estimateBytes(width, height, GL_RGBA);
+    }
+
+    /**
+     * @param width A texture width.
+     * @param height A texture height.
+     * @param internalFormat The texture internal format.
+     *
+     * @return The estimated size of a texture of the given size and format, in
+     *         bytes.
+     */
+    static long estimateBytes(int width, int height, int internalFormat)
+    {
+        return (long) width * height * (internalFormat == GL_RGBA ? 4 : 1);
     }
 
     /**
@@ -155,10 +547,27 @@ public class GlTexture
         return dimensions;
     }
 
-    @Override
-    protected void finalize() throws Throwable
+    /**
+     * Draws this texture with the given drawer. Textures not made of one
+     * region of an OpenGL texture (like nine patches) override it.
+     *
+     * @param drawer The drawer to use.
+     * @param x The x position of the screen rectangle.
+     * @param y The y position of the screen rectangle.
+     * @param width The width of the screen rectangle.
+     * @param height The height of the screen rectangle.
+     */
+    public void draw(Drawer drawer, int x, int y, int width, int height)
+    {
+        drawer.drawTexture(x, y, width, height, this, getRegion());
+    }
+
+    /**
+     * @return The part of the OpenGL texture covered by this texture, the
+     *         whole texture unless it is a region of an atlas.
+     */
+    public TextureRegion getRegion()
     {
-        super.finalize();
-        release();
+        return TextureRegion.WHOLE_TEXTURE;
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package org.libnoctis.render.gl;
 
+import java.awt.image.BufferedImage;
+
 /**
  * A Glyph (character of a font)
  *
@@ -41,6 +43,57 @@ public class Glyph
      */
     private TextureRegion icon;
 
+    /**
+     * The code point of this character.
+     */
+    private int codePoint;
+
+    /**
+     * The texture containing the character sprite, null if it isn't uploaded
+     * (or was evicted).
+     */
+    private GlTexture texture;
+
+    /**
+     * The alpha of the rendered character, row by row, waiting to be
+     * uploaded.
+     */
+    byte[] pixels;
+
+    /**
+     * The width of {@link #pixels}.
+     */
+    int pixelsWidth;
+
+    /**
+     * The height of {@link #pixels}.
+     */
+    int pixelsHeight;
+
+    /**
+     * Keeps the alpha of a rendered character until it is uploaded.
+     *
+     * @param image The rendered character.
+     */
+    void setPixels(BufferedImage image)
+    {
+        int[] argb = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+
+        pixels = new byte[argb.length];
+        pixelsWidth = image.getWidth();
+        pixelsHeight = image.getHeight();
+
+        for (int i = 0; i < argb.length; i++)
+        {
+            pixels[i] = (byte) (argb[i] >>> 24);
+        }
+    }
+
+    /**
+     * The glyph cache page containing the character sprite.
+     */
+    GlyphCache.Page page;
+
     public int getWidth()
     {
         return width;
@@ -99,4 +152,24 @@ public class Glyph
     {
         this.icon = icon;
     }
-}
\ No newline at end of file
+
+    public int getCodePoint()
+    {
+        return codePoint;
+    }
+
+    public void setCodePoint(int codePoint)
+    {
+        this.codePoint = codePoint;
+    }
+
+    public GlTexture getTexture()
+    {
+        return texture;
+    }
+
+    public void setTexture(GlTexture texture)
+    {
+        this.texture = texture;
+    }
+}
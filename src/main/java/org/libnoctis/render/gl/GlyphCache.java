@@ -0,0 +1,669 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.libnoctis.render.Drawer;
+
+/**
+ * The Glyph Cache
+ *
+ * <p>
+ *     Keeps the glyphs of a {@link GlFont}. Glyphs are rendered the first
+ *     time they are needed, and uploaded to texture pages the first time they
+ *     are drawn. Pages only store the alpha of the glyphs (see
+ *     {@link GlCaps#getAlphaTextureFormat()}). When all the pages are full, the least recently drawn page
+ *     is emptied and reused; its glyphs are uploaded again when needed.
+ * </p>
+ *
+ * <p>
+ *     Glyphs are packed in the pages with a skyline packer : the top of each
+ *     page is kept as a list of horizontal segments, and a glyph is placed
+ *     where its top is the lowest.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+class GlyphCache
+{
+    /**
+     * Default size of a page, in pixels.
+     */
+    static final int DEFAULT_PAGE_SIZE = 512;
+
+    /**
+     * Default maximum number of pages.
+     */
+    static final int DEFAULT_MAX_PAGES = 8;
+
+    /**
+     * Space left between two glyphs, to avoid bleeding when the textures are
+     * filtered.
+     */
+    private static final int PADDING = 1;
+
+    /**
+     * Below this number of characters, {@link #prewarm} renders them on the
+     * calling Thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * The threads rendering the glyphs given to {@link #prewarm}.
+     */
+    private static final ExecutorService RASTERIZER = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "Noctis Glyph Rasterizer #" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+
+    /**
+     * The font rendering the glyphs.
+     */
+    private final GlFont font;
+
+    /**
+     * The size of the pages, in pixels (limited by the maximum texture size).
+     */
+    private final int pageSize;
+
+    /**
+     * The maximum number of pages.
+     */
+    private final int maxPages;
+
+    /**
+     * Marks the characters known to have no glyph in the glyph table.
+     */
+    private static final Glyph NO_GLYPH = new Glyph();
+
+    /**
+     * The known glyphs of the Basic Multilingual Plane, by blocks of 256
+     * characters, indexed by code point.
+     */
+    private final Glyph[][] blocks = new Glyph[256][];
+
+    /**
+     * The known glyphs of the other planes, by code point (null for
+     * characters without glyph).
+     */
+    private final Map<Integer, Glyph> supplementary = new HashMap<Integer, Glyph>();
+
+    /**
+     * The texture pages.
+     */
+    private final List<Page> pages = new ArrayList<Page>();
+
+    /**
+     * Incremented each time a glyph is drawn, to find the least recently used
+     * page.
+     */
+    private long clock;
+
+    /**
+     * The number of evicted pages.
+     */
+    private int evictions;
+
+    /**
+     * The number of evicted pages of all the caches.
+     */
+    private static final AtomicInteger totalEvictions = new AtomicInteger();
+
+    /**
+     * @param font The font rendering the glyphs.
+     * @param pageSize The size of the pages, in pixels.
+     * @param maxPages The maximum number of pages.
+     */
+    GlyphCache(GlFont font, int pageSize, int maxPages)
+    {
+        this.font = font;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Gets the glyph of a character, rendering it if needed. The glyph may not
+     * be uploaded, but its metrics are known. Can be called from any Thread.
+     *
+     * @param codePoint The code point of the character.
+     *
+     * @return The glyph, or null if the character has no glyph.
+     */
+    synchronized Glyph get(int codePoint)
+    {
+        if (codePoint > Character.MAX_VALUE)
+        {
+            Integer key = codePoint;
+            Glyph glyph = supplementary.get(key);
+
+            if (glyph == null && !supplementary.containsKey(key))
+            {
+                glyph = font.rasterize(codePoint);
+                supplementary.put(key, glyph);
+            }
+
+            return glyph;
+        }
+
+        Glyph[] block = blocks[codePoint >> 8];
+
+        if (block == null)
+        {
+            block = blocks[codePoint >> 8] = new Glyph[256];
+        }
+
+        Glyph glyph = block[codePoint & 0xFF];
+
+        if (glyph == null)
+        {
+            glyph = font.rasterize(codePoint);
+            block[codePoint & 0xFF] = glyph == null ? NO_GLYPH : glyph;
+        }
+
+        return glyph == NO_GLYPH ? null : glyph;
+    }
+
+    /**
+     * Renders the glyphs of many characters at once, in parallel, or loads
+     * them from the disk cache. Their metrics are known after this call, they
+     * are uploaded when first drawn.
+     *
+     * @param chars The characters to render.
+     */
+    void prewarm(List<Character> chars)
+    {
+        final int[] codePoints = new int[chars.size()];
+
+        for (int i = 0; i < codePoints.length; i++)
+        {
+            codePoints[i] = chars.get(i);
+        }
+
+        Glyph[] rendered = GlyphDiskCache.load(font, codePoints);
+
+        if (rendered == null)
+        {
+            rendered = new Glyph[codePoints.length];
+
+            // Not saved if interrupted, some glyphs are missing
+            if (rasterize(codePoints, rendered))
+            {
+                GlyphDiskCache.save(font, codePoints, rendered);
+            }
+        }
+
+        synchronized (this)
+        {
+            for (int i = 0; i < codePoints.length; i++)
+            {
+                int codePoint = codePoints[i];
+                Glyph[] block = blocks[codePoint >> 8];
+
+                if (block == null)
+                {
+                    block = blocks[codePoint >> 8] = new Glyph[256];
+                }
+
+                // Characters skipped because of an interruption are rendered when needed
+                if (block[codePoint & 0xFF] == null && (rendered[i] != null || !font.shouldTryRendering(codePoint)))
+                {
+                    block[codePoint & 0xFF] = rendered[i] == null ? NO_GLYPH : rendered[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the glyphs of some characters, in parallel if there are many.
+     *
+     * @param codePoints The characters.
+     * @param rendered The array to fill with their glyphs.
+     *
+     * @return {@code false} if the rendering was interrupted.
+     */
+    private boolean rasterize(final int[] codePoints, final Glyph[] rendered)
+    {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+        if (threads == 1 || codePoints.length < PARALLEL_THRESHOLD)
+        {
+            for (int i = 0; i < codePoints.length; i++)
+            {
+                rendered[i] = font.rasterize(codePoints[i]);
+            }
+
+            return true;
+        }
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threads);
+        int chunk = (codePoints.length + threads - 1) / threads;
+
+        for (int start = 0; start < codePoints.length; start += chunk)
+        {
+            final int from = start;
+            final int to = Math.min(start + chunk, codePoints.length);
+
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call()
+                {
+                    for (int i = from; i < to; i++)
+                    {
+                        rendered[i] = font.rasterize(codePoints[i]);
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Object> future : RASTERIZER.invokeAll(tasks))
+            {
+                future.get();
+            }
+
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("Can't render the glyphs", e.getCause());
+        }
+    }
+
+    /**
+     * Gets the glyph of a character, uploading it if needed. Must be called
+     * from the render Thread.
+     *
+     * @param codePoint The code point of the character.
+     * @param drawer The drawer the glyph will be drawn with, flushed before a
+     *            page is reused.
+     *
+     * @return The glyph, ready to be drawn, or null if the character has no
+     *         glyph.
+     */
+    synchronized Glyph getResident(int codePoint, Drawer drawer)
+    {
+        Glyph glyph = get(codePoint);
+
+        if (glyph == null)
+            return null;
+
+        if (glyph.page == null && !upload(glyph, drawer))
+            return null;
+
+        glyph.page.lastUse = ++clock;
+
+        return glyph;
+    }
+
+    /**
+     * @return The number of evicted pages, glyph sprites drawn before an
+     *         eviction may not be valid anymore.
+     */
+    synchronized int getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * @return The number of evicted pages of all the caches. Display lists
+     *         recorded before an eviction may sample the glyphs that replaced
+     *         the evicted ones.
+     */
+    static int getTotalEvictions()
+    {
+        return totalEvictions.get();
+    }
+
+    /**
+     * @return The size of the pages, in pixels. Must be called from the
+     *         render Thread.
+     */
+    int getPageSize()
+    {
+        return Math.min(pageSize, GlCaps.getMaxTextureSize());
+    }
+
+    /**
+     * @return The textures of the pages.
+     */
+    synchronized List<GlTexture> getPages()
+    {
+        List<GlTexture> textures = new ArrayList<GlTexture>(pages.size());
+
+        for (Page page : pages)
+        {
+            textures.add(page.texture);
+        }
+
+        return textures;
+    }
+
+    /**
+     * Packs a glyph in a page and uploads it.
+     *
+     * @param glyph The glyph to upload.
+     * @param drawer The drawer to flush if a page is reused.
+     *
+     * @return {@code false} if the glyph is too big to fit in a page.
+     */
+    private boolean upload(Glyph glyph, Drawer drawer)
+    {
+        if (glyph.pixels == null)
+        {
+            // Evicted, render it again
+            Glyph rendered = font.rasterize(glyph.getCodePoint());
+
+            glyph.pixels = rendered.pixels;
+            glyph.pixelsWidth = rendered.pixelsWidth;
+            glyph.pixelsHeight = rendered.pixelsHeight;
+        }
+
+        int size = getPageSize();
+
+        if (glyph.pixelsWidth + PADDING > size || glyph.pixelsHeight + PADDING > size)
+            return false;
+
+        for (Page page : pages)
+        {
+            if (page.add(glyph))
+                return true;
+        }
+
+        Page page;
+
+        if (pages.size() < maxPages)
+        {
+            page = new Page(size);
+            pages.add(page);
+        }
+        else
+        {
+            page = pages.get(0);
+
+            for (Page candidate : pages)
+            {
+                if (candidate.lastUse < page.lastUse)
+                    page = candidate;
+            }
+
+            // The glyphs of the page may be waiting to be drawn
+            drawer.flush();
+
+            page.clear();
+            evictions++;
+            totalEvictions.incrementAndGet();
+        }
+
+        page.add(glyph);
+
+        return true;
+    }
+
+    /**
+     * Releases the pages.
+     */
+    synchronized void release()
+    {
+        for (Page page : pages)
+        {
+            page.clear();
+            page.texture.release();
+        }
+
+        pages.clear();
+    }
+
+    /**
+     * A page of glyphs : one texture, filled with a skyline packer.
+     */
+    static class Page
+    {
+        private final GlTexture texture;
+        private final int size;
+        private final TextureRegion.Builder regionBuilder;
+
+        /**
+         * The top of the packed glyphs, as {x, y, width} segments sorted by x
+         * and covering the whole page width.
+         */
+        private final List<int[]> skyline = new ArrayList<int[]>();
+
+        /**
+         * The glyphs uploaded to this page.
+         */
+        private final List<Glyph> glyphs = new ArrayList<Glyph>();
+
+        /**
+         * When a glyph of this page was last drawn.
+         */
+        private long lastUse;
+
+        Page(int size)
+        {
+            this.size = size;
+            this.texture = new GlTexture(size, size, GlCaps.getAlphaTextureFormat());
+            this.regionBuilder = new TextureRegion.Builder(size, size);
+
+            skyline.add(new int[] {0, 0, size});
+        }
+
+        boolean add(Glyph glyph)
+        {
+            int width = glyph.pixelsWidth + PADDING;
+            int height = glyph.pixelsHeight + PADDING;
+
+            int best = -1;
+            int bestY = size;
+            int bestWaste = Integer.MAX_VALUE;
+
+            for (int i = 0; i < skyline.size(); i++)
+            {
+                int y = fit(i, width, height);
+
+                if (y < 0)
+                {
+                    continue;
+                }
+
+                int waste = wasteBelow(i, width, y);
+
+                if (y < bestY || y == bestY && waste < bestWaste)
+                {
+                    best = i;
+                    bestY = y;
+                    bestWaste = waste;
+                }
+            }
+
+            if (best == -1)
+            {
+                return false;
+            }
+
+            int x = skyline.get(best)[0];
+            int y = bestY;
+
+            place(best, x, y + height, width);
+
+            texture.upload(glyph.pixels, glyph.pixelsWidth, glyph.pixelsHeight, x, y);
+
+            glyph.setIcon(regionBuilder.build(x, y, glyph.pixelsWidth, glyph.pixelsHeight));
+            glyph.setTexture(texture);
+            glyph.page = this;
+            glyph.pixels = null;
+            glyphs.add(glyph);
+
+            return true;
+        }
+
+        /**
+         * @param index The segment where the rectangle would start.
+         * @param width The width of the rectangle.
+         * @param height The height of the rectangle.
+         *
+         * @return The Y coordinate of a rectangle placed at the start of the
+         *         given segment, or -1 if it doesn't fit.
+         */
+        private int fit(int index, int width, int height)
+        {
+            int x = skyline.get(index)[0];
+
+            if (x + width > size)
+            {
+                return -1;
+            }
+
+            int y = 0;
+            int left = width;
+
+            for (int i = index; left > 0; i++)
+            {
+                int[] segment = skyline.get(i);
+                y = Math.max(y, segment[1]);
+
+                if (y + height > size)
+                {
+                    return -1;
+                }
+
+                left -= segment[2];
+            }
+
+            return y;
+        }
+
+        /**
+         * @return The area left empty below a rectangle placed at the start of
+         *         the given segment, at the given Y.
+         */
+        private int wasteBelow(int index, int width, int y)
+        {
+            int waste = 0;
+            int left = width;
+
+            for (int i = index; left > 0; i++)
+            {
+                int[] segment = skyline.get(i);
+                int covered = Math.min(left, segment[2]);
+
+                waste += covered * (y - segment[1]);
+                left -= covered;
+            }
+
+            return waste;
+        }
+
+        /**
+         * Raises the skyline where a rectangle has been placed.
+         */
+        private void place(int index, int x, int top, int width)
+        {
+            skyline.add(index, new int[] {x, top, width});
+
+            int end = x + width;
+
+            // Shrinks or removes the segments below the new one
+            while (index + 1 < skyline.size())
+            {
+                int[] segment = skyline.get(index + 1);
+
+                if (segment[0] >= end)
+                {
+                    break;
+                }
+
+                int segmentEnd = segment[0] + segment[2];
+
+                if (segmentEnd <= end)
+                {
+                    skyline.remove(index + 1);
+                }
+                else
+                {
+                    segment[2] = segmentEnd - end;
+                    segment[0] = end;
+                    break;
+                }
+            }
+
+            // Merges the neighbour segments at the same height
+            for (int i = 0; i + 1 < skyline.size();)
+            {
+                int[] segment = skyline.get(i);
+                int[] next = skyline.get(i + 1);
+
+                if (segment[1] == next[1])
+                {
+                    segment[2] += next[2];
+                    skyline.remove(i + 1);
+                }
+                else
+                {
+                    i++;
+                }
+            }
+        }
+
+        /**
+         * Removes all the glyphs of this page.
+         */
+        void clear()
+        {
+            for (Glyph glyph : glyphs)
+            {
+                glyph.setIcon(null);
+                glyph.setTexture(null);
+                glyph.page = null;
+            }
+
+            glyphs.clear();
+            skyline.clear();
+            skyline.add(new int[] {0, 0, size});
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.awt.Font;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The Glyph Disk Cache
+ *
+ * <p>
+ *     Stores the glyphs rendered by a {@link GlFont} in the directory given to
+ *     {@link FontCache#setDiskCacheDirectory}, so they aren't rendered again
+ *     through Java2D on the next starts. A file holds, for each character, the
+ *     glyph metrics and its pixels as alpha bytes. It is read at once when
+ *     loaded, and not mapped, so an invalid file can be deleted right away
+ *     (a mapped file can't be deleted on Windows until it is unmapped).
+ * </p>
+ *
+ * <p>
+ *     Files are named after a hash of the font identity (name, PostScript
+ *     name, number of glyphs, size and style), the kind of font, the rendered
+ *     characters, the format version and the Java version, whose rasterizer
+ *     may render differently.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+final class GlyphDiskCache
+{
+    /**
+     * The first bytes of a cache file.
+     */
+    private static final int MAGIC = 0x4E474C59;
+
+    /**
+     * Version of the file format, changed when the format or the way glyphs
+     * are rendered changes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Extension of the cache files.
+     */
+    private static final String EXTENSION = ".glyphs";
+
+    private GlyphDiskCache()
+    {
+    }
+
+    /**
+     * Loads the cached glyphs of some characters.
+     *
+     * @param font The font rendering the glyphs.
+     * @param codePoints The characters.
+     *
+     * @return The glyphs, in the order of the given characters (null for
+     *         characters without glyph), or null if they aren't cached.
+     */
+    static Glyph[] load(GlFont font, int[] codePoints)
+    {
+        File file = getFile(font, codePoints);
+
+        if (file == null || !file.isFile())
+        {
+            return null;
+        }
+
+        try
+        {
+            return read(file, codePoints);
+        }
+        catch (IOException e)
+        {
+            file.delete();
+        }
+        catch (BufferUnderflowException e)
+        {
+            file.delete();
+        }
+
+        return null;
+    }
+
+    /**
+     * Saves rendered glyphs, does nothing if the disk cache is disabled.
+     *
+     * @param font The font that rendered the glyphs.
+     * @param codePoints The characters.
+     * @param glyphs Their glyphs (null for characters without glyph), with
+     *            their pixels.
+     */
+    static void save(GlFont font, int[] codePoints, Glyph[] glyphs)
+    {
+        File file = getFile(font, codePoints);
+
+        if (file == null)
+        {
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+
+        try
+        {
+            file.getParentFile().mkdirs();
+            write(temp, codePoints, glyphs);
+
+            if (!temp.renameTo(file))
+            {
+                // Another font may have written it meanwhile
+                temp.delete();
+            }
+        }
+        catch (IOException e)
+        {
+            temp.delete();
+        }
+    }
+
+    private static Glyph[] read(File file, int[] codePoints) throws IOException
+    {
+        ByteBuffer buffer;
+        FileInputStream in = new FileInputStream(file);
+
+        try
+        {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("Invalid glyph cache file " + file);
+            }
+
+            buffer = ByteBuffer.allocate((int) size);
+
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                {
+                    throw new IOException("Invalid glyph cache file " + file);
+                }
+            }
+
+            buffer.flip();
+        }
+        finally
+        {
+            in.close();
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != codePoints.length)
+        {
+            throw new IOException("Invalid glyph cache file " + file);
+        }
+
+        Glyph[] glyphs = new Glyph[codePoints.length];
+
+        for (int i = 0; i < codePoints.length; i++)
+        {
+            if (buffer.getInt() != codePoints[i])
+            {
+                throw new IOException("Invalid glyph cache file " + file);
+            }
+
+            if (buffer.get() == 0)
+            {
+                continue;
+            }
+
+            Glyph glyph = new Glyph();
+            glyph.setCodePoint(codePoints[i]);
+            glyph.setWidth(buffer.getInt());
+            glyph.setHeight(buffer.getInt());
+            glyph.setxAdvance(buffer.getInt());
+            glyph.setxPrevAdvance(buffer.getInt());
+            glyph.setyPrevAdvance(buffer.getInt());
+
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+
+            if (width <= 0 || height <= 0 || (long) width * height > buffer.remaining())
+            {
+                throw new IOException("Invalid glyph cache file " + file);
+            }
+
+            glyph.pixels = new byte[width * height];
+            glyph.pixelsWidth = width;
+            glyph.pixelsHeight = height;
+            buffer.get(glyph.pixels);
+
+            glyphs[i] = glyph;
+        }
+
+        return glyphs;
+    }
+
+    private static void write(File file, int[] codePoints, Glyph[] glyphs) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(codePoints.length);
+
+            for (int i = 0; i < codePoints.length; i++)
+            {
+                Glyph glyph = glyphs[i];
+
+                out.writeInt(codePoints[i]);
+                out.writeByte(glyph == null ? 0 : 1);
+
+                if (glyph == null)
+                {
+                    continue;
+                }
+
+                out.writeInt(glyph.getWidth());
+                out.writeInt(glyph.getHeight());
+                out.writeInt(glyph.getxAdvance());
+                out.writeInt(glyph.getxPrevAdvance());
+                out.writeInt(glyph.getyPrevAdvance());
+                out.writeInt(glyph.pixelsWidth);
+                out.writeInt(glyph.pixelsHeight);
+                out.write(glyph.pixels);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * @return The cache file of the given glyphs, or null if the disk cache is
+     *         disabled.
+     */
+    private static File getFile(GlFont font, int[] codePoints)
+    {
+        File directory = FontCache.getDiskCacheDirectory();
+
+        if (directory == null)
+        {
+            return null;
+        }
+
+        Font awt = font.getAwtFont();
+        StringBuilder key = new StringBuilder();
+
+        key.append(VERSION).append('/');
+        key.append(System.getProperty("java.version")).append('/');
+        key.append(font.getClass().getName()).append('/');
+        key.append(awt.getName()).append('/');
+        key.append(awt.getPSName()).append('/');
+        key.append(awt.getNumGlyphs()).append('/');
+        key.append(awt.getSize2D()).append('/');
+        key.append(awt.getStyle()).append('/');
+
+        for (int codePoint : codePoints)
+        {
+            key.append(Integer.toHexString(codePoint)).append(',');
+        }
+
+        return new File(directory, hash(key.toString()) + EXTENSION);
+    }
+
+    private static String hash(String key)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest)
+            {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import org.libnoctis.render.Color;
+import org.libnoctis.render.Drawer;
+
+/**
+ * A Glyph Run
+ *
+ * <p>
+ *     A string laid out by a {@link GlFont} : the position, sprite and color
+ *     of each of its glyphs, relative to the string position. Drawing it again
+ *     only replays the quads, without parsing or allocating anything.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+class GlyphRun
+{
+    /**
+     * The number of glyphs.
+     */
+    private int count;
+
+    /**
+     * The glyphs screen rectangles, as {x, y, width, height} for each glyph.
+     */
+    private int[] bounds = new int[16 * 4];
+
+    /**
+     * The glyphs textures.
+     */
+    private GlTexture[] textures = new GlTexture[16];
+
+    /**
+     * The glyphs sprites.
+     */
+    private TextureRegion[] regions = new TextureRegion[16];
+
+    /**
+     * The glyphs colors, null for the drawer color at the start of the
+     * string.
+     */
+    private Color[] colors = new Color[16];
+
+    /**
+     * The number of glyph cache evictions when the run was laid out.
+     */
+    private final int evictions;
+
+    /**
+     * @param evictions The number of evictions of the font glyph cache.
+     */
+    GlyphRun(int evictions)
+    {
+        this.evictions = evictions;
+    }
+
+    /**
+     * Adds a glyph at the end of the run.
+     */
+    void add(int x, int y, int width, int height, GlTexture texture, TextureRegion region, Color color)
+    {
+        if (count == textures.length)
+        {
+            int capacity = count * 2;
+
+            bounds = copyOf(bounds, capacity * 4);
+            textures = copyOf(textures, new GlTexture[capacity]);
+            regions = copyOf(regions, new TextureRegion[capacity]);
+            colors = copyOf(colors, new Color[capacity]);
+        }
+
+        bounds[count * 4] = x;
+        bounds[count * 4 + 1] = y;
+        bounds[count * 4 + 2] = width;
+        bounds[count * 4 + 3] = height;
+        textures[count] = texture;
+        regions[count] = region;
+        colors[count] = color;
+
+        count++;
+    }
+
+    /**
+     * @param evictions The current number of evictions of the glyph cache.
+     *
+     * @return {@code true} if the glyph sprites are still where the run was
+     *         laid out.
+     */
+    boolean isValid(int evictions)
+    {
+        return this.evictions == evictions;
+    }
+
+    /**
+     * Draws the run.
+     *
+     * @param drawer The drawer to use.
+     * @param x The X position of the string.
+     * @param y The Y position of the string.
+     */
+    void draw(Drawer drawer, int x, int y)
+    {
+        Color start = drawer.getColor();
+        Color current = start;
+
+        for (int i = 0; i < count; i++)
+        {
+            Color color = colors[i] == null ? start : colors[i];
+
+            if (color != current)
+            {
+                drawer.setColor(color);
+                current = color;
+            }
+
+            drawer.drawTexture(x + bounds[i * 4], y + bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3], textures[i], regions[i]);
+        }
+
+        if (current != start)
+        {
+            drawer.setColor(start);
+        }
+    }
+
+    private static int[] copyOf(int[] array, int length)
+    {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+
+        return copy;
+    }
+
+    private static <T> T[] copyOf(T[] array, T[] copy)
+    {
+        System.arraycopy(array, 0, copy, 0, array.length);
+
+        return copy;
+    }
+}
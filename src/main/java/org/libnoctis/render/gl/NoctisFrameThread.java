@@ -18,8 +18,14 @@
  */
 package org.libnoctis.render.gl;
 
-import java.util.Iterator;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.awt.Rectangle;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.libnoctis.components.NFrame;
 import org.lwjgl.opengl.Display;
 
@@ -29,6 +35,19 @@ import static org.lwjgl.opengl.GL11.*;
 
 /**
  * A frame render Thread.
+ *
+ * <p>
+ * If the frame renders on demand (see {@link NFrame#setOnDemandRendering}),
+ * a frame is only rendered when input arrived, a task was run, an animation
+ * is running or a render was requested. Otherwise this Thread sleeps, only
+ * waking up to poll the input.
+ * </p>
+ *
+ * <p>
+ * Tasks given to {@link #runLater} are run before each frame, for at most
+ * {@link #getTaskBudget()} milliseconds : the remaining ones are run before
+ * the next frames, so many tasks don't freeze the frame.
+ * </p>
  * 
  * @author Wytrem
  * @version 0.1.0
@@ -44,13 +63,71 @@ public class NoctisFrameThread extends Thread
     /**
      * Ordered collection of tasks that should be executed is this Thread.
      */
-    private CopyOnWriteArrayList<Runnable> runnables = new CopyOnWriteArrayList<Runnable>();
+    private final Queue<Runnable> runnables = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * Default value of {@link #taskBudget}, in milliseconds.
+     */
+    public static final long DEFAULT_TASK_BUDGET = 8;
+
+    /**
+     * How long the tasks can run before each frame, in nanoseconds.
+     */
+    private volatile long taskBudget = DEFAULT_TASK_BUDGET * 1000000L;
 
     /**
      * The frame rendered by this Thread.
      */
     private NFrame frame;
 
+    /**
+     * The texture keeping the frame content when only the damage is redrawn.
+     */
+    private GlFramebuffer backBuffer;
+
+    /**
+     * The damaged rectangle of the current frame.
+     */
+    private final Rectangle damage = new Rectangle();
+
+    /**
+     * The whole frame, rendered when the damage isn't used.
+     */
+    private final Rectangle screen = new Rectangle();
+
+    /**
+     * How long this Thread sleeps between two input polls when idle, in
+     * milliseconds.
+     */
+    private static final long IDLE_POLL_MILLIS = 10;
+
+    /**
+     * {@code true} if the next frame should be rendered, even if nothing
+     * happened.
+     */
+    private final AtomicBoolean renderRequested = new AtomicBoolean(true);
+
+    /**
+     * The number of running animations, every frame is rendered while there
+     * is at least one.
+     */
+    private final AtomicInteger animations = new AtomicInteger();
+
+    /**
+     * Notified to wake this Thread up when it is idle.
+     */
+    private final Object idleLock = new Object();
+
+    /**
+     * The durations of the phases of the rendered frames.
+     */
+    private final FrameMetrics metrics = new FrameMetrics();
+
+    /**
+     * The number of glyph pages evicted when the last frame was rendered.
+     */
+    private int glyphEvictions = GlyphCache.getTotalEvictions();
+
     /**
      * The Noctis Frame Thread
      *
@@ -65,18 +142,22 @@ public class NoctisFrameThread extends Thread
     @Override
     public void run()
     {
-        callRunnables();
+        // The frame creation and the first components init aren't budgeted
+        callRunnables(false);
 
         while (isRunning)
         {
+            long frameStart = System.nanoTime();
+
             // Temporary, needed because a bug will throw else.
-            callRunnables();
+            boolean changed = callRunnables(true);
 
-            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+            long inputStart = System.nanoTime();
 
             if (Display.wasResized())
             {
                 frame.resize();
+                changed = true;
             }
 
             if (Display.isCloseRequested())
@@ -85,26 +166,235 @@ public class NoctisFrameThread extends Thread
             }
 
             // - Listen to user input
-            frame.input();
+            changed |= frame.input();
+
+            long inputEnd = System.nanoTime();
+
+            if (frame.isOnDemandRendering())
+            {
+                changed |= renderRequested.getAndSet(false) || animations.get() > 0 || Display.isDirty();
+
+                if (!changed)
+                {
+                    // Nothing to draw, wait for a task or the next input poll
+                    GlResourceManager.update();
+                    waitIdle();
+                    Display.processMessages();
+
+                    continue;
+                }
+            }
+
+            metrics.record(FrameMetrics.Phase.TASKS, inputStart - frameStart);
+            metrics.record(FrameMetrics.Phase.INPUT, inputEnd - inputStart);
+            metrics.recordLayout();
 
-            // - Render pass
+            if (frame.isDamageRendering() && GlCaps.isFramebufferSupported())
             {
-                frame.getDrawer().preRender();
+                renderDamage();
+            }
+            else
+            {
+                releaseBackBuffer();
 
-                // Render frame and its children
-                frame.render();
+                glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 
-                frame.getDrawer().postRender();
+                screen.setBounds(0, 0, Display.getWidth(), Display.getHeight());
+                renderPass(screen);
             }
 
+            checkGlyphEvictions();
+
+            // Free the unused textures and display lists
+            GlResourceManager.update();
+
             // Swap buffers
+            long updateStart = System.nanoTime();
             Display.update();
+            long updateEnd = System.nanoTime();
+
+            metrics.record(FrameMetrics.Phase.DISPLAY_UPDATE, updateEnd - updateStart);
+            metrics.record(FrameMetrics.Phase.FRAME, updateEnd - frameStart);
 
             // Sync FPS as needed by the frame object
             Display.sync(frame.getFPS());
         }
     }
 
+    /**
+     * Renders the frame and its children.
+     *
+     * @param clip The part of the frame to render, the children outside of it
+     *            are skipped.
+     */
+    private void renderPass(Rectangle clip)
+    {
+        long start = System.nanoTime();
+        frame.getDrawer().preRender();
+        long preRendered = System.nanoTime();
+
+        frame.setRenderClip(clip);
+        frame.render();
+        frame.setRenderClip(null);
+        long rendered = System.nanoTime();
+
+        frame.getDrawer().postRender();
+        long postRendered = System.nanoTime();
+
+        metrics.record(FrameMetrics.Phase.PRE_RENDER, preRendered - start);
+        metrics.record(FrameMetrics.Phase.RENDER, rendered - preRendered);
+        metrics.record(FrameMetrics.Phase.POST_RENDER, postRendered - rendered);
+    }
+
+    /**
+     * Repaints the whole frame if a glyph page was reused since the last
+     * frame and the components are painted in display lists : the lists
+     * recorded before still sample the reused page, that now holds other
+     * glyphs.
+     */
+    private void checkGlyphEvictions()
+    {
+        int evictions = GlyphCache.getTotalEvictions();
+
+        if (evictions == glyphEvictions)
+        {
+            return;
+        }
+
+        glyphEvictions = evictions;
+
+        if (!frame.getDrawer().shouldPaintEveryFrame())
+        {
+            frame.repaintAll();
+        }
+    }
+
+    /**
+     * @return The durations of the phases of the rendered frames. Idle
+     *         iterations of an on demand frame aren't recorded.
+     */
+    public FrameMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Redraws only the damaged part of the frame in the back buffer, then
+     * copies the back buffer to the screen.
+     */
+    private void renderDamage()
+    {
+        int width = Display.getWidth();
+        int height = Display.getHeight();
+
+        if (backBuffer == null || backBuffer.getWidth() != width || backBuffer.getHeight() != height)
+        {
+            releaseBackBuffer();
+
+            backBuffer = new GlFramebuffer(width, height);
+            frame.getDamage().addAll();
+        }
+
+        if (frame.getDamage().poll(width, height, damage))
+        {
+            backBuffer.bind();
+
+            glEnable(GL_SCISSOR_TEST);
+
+            // Scissor box origin is the bottom-left corner
+            glScissor(damage.x, height - damage.y - damage.height, damage.width, damage.height);
+            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+
+            renderPass(damage);
+
+            glDisable(GL_SCISSOR_TEST);
+
+            backBuffer.unbind();
+        }
+
+        backBuffer.blit(0, 0, width, height);
+    }
+
+    /**
+     * Releases the back buffer, if any.
+     */
+    private void releaseBackBuffer()
+    {
+        if (backBuffer != null)
+        {
+            backBuffer.release();
+            backBuffer = null;
+        }
+    }
+
+    /**
+     * Sleeps until a task is scheduled, a render is requested or it is time to
+     * poll the input again.
+     */
+    private void waitIdle()
+    {
+        synchronized (idleLock)
+        {
+            if (!runnables.isEmpty() || renderRequested.get() || animations.get() > 0)
+                return;
+
+            try
+            {
+                idleLock.wait(IDLE_POLL_MILLIS);
+            }
+            catch (InterruptedException e)
+            {
+                interrupt();
+            }
+        }
+    }
+
+    /**
+     * Wakes this Thread up if it is idle.
+     */
+    private void wake()
+    {
+        synchronized (idleLock)
+        {
+            idleLock.notifyAll();
+        }
+    }
+
+    /**
+     * Requests the next frame to be rendered, when rendering on demand. Can be
+     * called from any Thread.
+     */
+    public void requestRender()
+    {
+        renderRequested.set(true);
+        wake();
+    }
+
+    /**
+     * Starts an animation : every frame is rendered until it is stopped with
+     * {@link #stopAnimation()}, even when rendering on demand. Can be called
+     * from any Thread.
+     */
+    public void startAnimation()
+    {
+        animations.incrementAndGet();
+        wake();
+    }
+
+    /**
+     * Stops an animation started with {@link #startAnimation()}.
+     */
+    public void stopAnimation()
+    {
+        if (animations.decrementAndGet() < 0)
+        {
+            animations.incrementAndGet();
+            throw new IllegalStateException("No animation is running");
+        }
+
+        requestRender();
+    }
+
     /**
      * Schedules the given task to be executed before next render pass.
      * 
@@ -112,30 +402,90 @@ public class NoctisFrameThread extends Thread
      */
     public void runLater(Runnable runnable)
     {
-        synchronized (runnables)
+        runnables.offer(runnable);
+
+        wake();
+    }
+
+    /**
+     * Schedules the given task to be executed before next render pass. Its
+     * result can be waited for from another Thread, but not from this one.
+     *
+     * @param task The task to be executed in this Thread.
+     *
+     * @return The future result of the task.
+     */
+    public <T> Future<T> submit(Callable<T> task)
+    {
+        FutureTask<T> future = new FutureTask<T>(task);
+        runLater(future);
+
+        return future;
+    }
+
+    /**
+     * Schedules the given task to be executed before next render pass. Its
+     * end can be waited for from another Thread, but not from this one.
+     *
+     * @param task The task to be executed in this Thread.
+     *
+     * @return A future giving null once the task ran.
+     */
+    public Future<?> submit(Runnable task)
+    {
+        FutureTask<Object> future = new FutureTask<Object>(task, null);
+        runLater(future);
+
+        return future;
+    }
+
+    /**
+     * Call the runnables (of the runnables list), until they were all run or
+     * the task budget is exceeded. At least one is run.
+     *
+     * @param budgeted {@code false} to run all the runnables, whatever the
+     *            time they take.
+     *
+     * @return {@code true} if at least one task was run.
+     */
+    private boolean callRunnables(boolean budgeted)
+    {
+        Runnable runnable = runnables.poll();
+
+        if (runnable == null)
+            return false;
+
+        long deadline = System.nanoTime() + taskBudget;
+
+        do
         {
-            runnables.add(runnable);
+            runnable.run();
         }
+        while ((!budgeted || System.nanoTime() - deadline < 0) && (runnable = runnables.poll()) != null);
+
+        return true;
     }
 
     /**
-     * Call the runnables (of the runnables list)
+     * @return How long the tasks can run before each frame, in milliseconds.
      */
-    private void callRunnables()
+    public long getTaskBudget()
     {
-        synchronized (runnables)
-        {
-            for (Iterator<Runnable> iterator = runnables.iterator(); iterator.hasNext();)
-            {
-                Runnable runnable = iterator.next();
-                runnable.run();
+        return taskBudget / 1000000L;
+    }
 
-                runnables.remove(runnable);
-            }
+    /**
+     * Defines how long the tasks can run before each frame. The remaining
+     * tasks are run before the next frames.
+     *
+     * @param millis The budget, in milliseconds.
+     */
+    public void setTaskBudget(long millis)
+    {
+        if (millis < 0)
+            throw new IllegalArgumentException("Negative task budget : " + millis);
 
-            if (runnables.size() > 0)
-                callRunnables();
-        }
+        this.taskBudget = millis * 1000000L;
     }
 
     /**
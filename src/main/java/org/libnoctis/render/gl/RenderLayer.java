@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.nio.FloatBuffer;
+import org.libnoctis.render.Color;
+import org.libnoctis.render.Drawer;
+import org.lwjgl.BufferUtils;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL14.*;
+
+/**
+ * A Render Layer
+ *
+ * <p>
+ *     A texture something is rendered into once, and then drawn as a single
+ *     quad until it is invalidated. Used to cache the rendering of static
+ *     container subtrees.
+ * </p>
+ *
+ * <p>
+ *     The layer content is stored with premultiplied alpha, so translucent
+ *     components look the same as when rendered directly.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class RenderLayer
+{
+    /**
+     * The framebuffer holding the layer content.
+     */
+    private GlFramebuffer framebuffer;
+
+    /**
+     * {@code true} if the scissor test was enabled before {@link #begin}.
+     */
+    private boolean scissor;
+
+    /**
+     * The blend function before {@link #begin}, restored by {@link #end}
+     * (another layer's, when layers are nested) : source RGB, destination
+     * RGB, source alpha, destination alpha.
+     */
+    private final int[] blend = new int[4];
+
+    /**
+     * The blend function before {@link #draw}.
+     */
+    private final int[] drawBlend = new int[4];
+
+    /**
+     * The clear color before {@link #begin} (16 floats for the GL query).
+     */
+    private final FloatBuffer clearColor = BufferUtils.createFloatBuffer(16);
+
+    /**
+     * @param width A width.
+     * @param height A height.
+     * @return {@code true} if this layer has content of the given size.
+     */
+    public boolean isValidFor(int width, int height)
+    {
+        return framebuffer != null && framebuffer.getWidth() == width && framebuffer.getHeight() == height;
+    }
+
+    /**
+     * Starts rendering into this layer. Everything drawn until {@link #end}
+     * goes into the layer, with (0, 0) being its top-left corner.
+     *
+     * @param drawer The drawer used to render the layer.
+     * @param width The width of the layer.
+     * @param height The height of the layer.
+     */
+    public void begin(Drawer drawer, int width, int height)
+    {
+        drawer.flush();
+
+        if (framebuffer == null || framebuffer.getWidth() != width || framebuffer.getHeight() != height)
+        {
+            release();
+            framebuffer = new GlFramebuffer(width, height);
+        }
+
+        framebuffer.bind();
+
+        scissor = glIsEnabled(GL_SCISSOR_TEST);
+        glDisable(GL_SCISSOR_TEST);
+
+        saveBlend(blend);
+
+        clearColor.clear();
+        glGetFloat(GL_COLOR_CLEAR_VALUE, clearColor);
+
+        glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        glClear(GL_COLOR_BUFFER_BIT);
+        glClearColor(clearColor.get(0), clearColor.get(1), clearColor.get(2), clearColor.get(3));
+
+        glMatrixMode(GL_PROJECTION);
+        glPushMatrix();
+        glLoadIdentity();
+        glOrtho(0, width, height, 0, 1, -1);
+        glMatrixMode(GL_MODELVIEW);
+
+        glBlendFuncSeparate(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA, GL_ONE, GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Stops rendering into this layer, and goes back to the previous target.
+     *
+     * @param drawer The drawer used to render the layer.
+     */
+    public void end(Drawer drawer)
+    {
+        drawer.flush();
+
+        restoreBlend(blend);
+
+        glMatrixMode(GL_PROJECTION);
+        glPopMatrix();
+        glMatrixMode(GL_MODELVIEW);
+
+        if (scissor)
+        {
+            glEnable(GL_SCISSOR_TEST);
+        }
+
+        framebuffer.unbind();
+    }
+
+    /**
+     * Draws the layer content.
+     *
+     * @param drawer The drawer to use.
+     * @param x The x position of the layer.
+     * @param y The y position of the layer.
+     */
+    public void draw(Drawer drawer, int x, int y)
+    {
+        Color color = drawer.getColor();
+
+        drawer.flush();
+        saveBlend(drawBlend);
+        glBlendFunc(GL_ONE, GL_ONE_MINUS_SRC_ALPHA);
+
+        drawer.setColor(Color.WHITE);
+        drawer.drawTexture(x, y, framebuffer.getWidth(), framebuffer.getHeight(), framebuffer.getTexture(), GlFramebuffer.REGION);
+
+        drawer.flush();
+        restoreBlend(drawBlend);
+
+        drawer.setColor(color);
+    }
+
+    /**
+     * Reads the current blend function.
+     *
+     * @param func The array receiving source RGB, destination RGB, source
+     *            alpha and destination alpha.
+     */
+    private static void saveBlend(int[] func)
+    {
+        func[0] = glGetInteger(GL_BLEND_SRC_RGB);
+        func[1] = glGetInteger(GL_BLEND_DST_RGB);
+        func[2] = glGetInteger(GL_BLEND_SRC_ALPHA);
+        func[3] = glGetInteger(GL_BLEND_DST_ALPHA);
+    }
+
+    /**
+     * Sets back a blend function read by {@link #saveBlend}.
+     */
+    private static void restoreBlend(int[] func)
+    {
+        glBlendFuncSeparate(func[0], func[1], func[2], func[3]);
+    }
+
+    /**
+     * Removes the layer content from the graphic memory.
+     */
+    public void release()
+    {
+        if (framebuffer != null)
+        {
+            framebuffer.release();
+            framebuffer = null;
+        }
+    }
+}
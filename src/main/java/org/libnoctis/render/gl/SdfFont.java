@@ -0,0 +1,334 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.awt.Font;
+import java.util.List;
+import org.libnoctis.render.Color;
+import org.libnoctis.render.Drawer;
+
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * A Signed Distance Field Font
+ *
+ * <p>
+ * A font whose glyphs are rendered once, at {@link #RENDER_SIZE}, as distance
+ * fields : each pixel contains the distance to the glyph edge. They are drawn
+ * by {@link SdfShader}, sharp at any size, so all the sizes of a font
+ * ({@link #derive}) share the same glyph pages. Outline and shadow effects
+ * come for free.
+ * </p>
+ *
+ * <p>
+ * Without shader support, glyphs are drawn using alpha testing (no
+ * antialiasing, outline or shadow).
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class SdfFont extends GlFont
+{
+    /**
+     * The size the glyphs are rendered at, in pixels.
+     */
+    public static final int RENDER_SIZE = 48;
+
+    /**
+     * The distance covered by the distance fields around the glyph edges, in
+     * pixels at the rendering size.
+     */
+    public static final int SPREAD = 6;
+
+    /**
+     * Distance given to pixels with no glyph edge near them.
+     */
+    private static final double FAR = 1e20;
+
+    private Color outlineColor;
+    private float outlineWidth;
+
+    private Color shadowColor;
+    private float shadowOffsetX;
+    private float shadowOffsetY;
+    private float shadowSoftness;
+
+    /**
+     * A SDF font.
+     *
+     * @param chars The characters to render now.
+     * @param font The AWT font, with the size to draw at.
+     */
+    SdfFont(List<Character> chars, Font font)
+    {
+        super(chars, font.deriveFont((float) RENDER_SIZE));
+
+        setSize(font.getSize2D());
+    }
+
+    /**
+     * A SDF font sharing the glyphs of another one.
+     *
+     * @param base The font whose glyphs are shared.
+     * @param size The size to draw at, in pixels.
+     */
+    private SdfFont(SdfFont base, float size)
+    {
+        super(base, size);
+    }
+
+    @Override
+    Glyph rasterize(int codePoint)
+    {
+        Glyph glyph = super.rasterize(codePoint);
+
+        if (glyph != null)
+        {
+            glyph.pixels = toDistanceField(glyph.pixels, glyph.pixelsWidth, glyph.pixelsHeight);
+            glyph.pixelsWidth += SPREAD * 2;
+            glyph.pixelsHeight += SPREAD * 2;
+
+            glyph.setWidth(glyph.getWidth() + SPREAD * 2);
+            glyph.setHeight(glyph.getHeight() + SPREAD * 2);
+            glyph.setxPrevAdvance(glyph.getxPrevAdvance() - SPREAD);
+            glyph.setyPrevAdvance(glyph.getyPrevAdvance() - SPREAD);
+        }
+
+        return glyph;
+    }
+
+    @Override
+    public void drawString(String str, int x, int y, Drawer drawer)
+    {
+        boolean shader = SdfShader.isSupported();
+
+        drawer.flush();
+
+        if (shader)
+        {
+            float texel = 1.0f / (getScale() * getGlyphs().getPageSize());
+            float pixel = 0.5f / (getScale() * SPREAD);
+
+            SdfShader.bind(outlineColor, outlineWidth * pixel, shadowColor, shadowOffsetX * texel, shadowOffsetY * texel, shadowSoftness * pixel);
+        }
+        else
+        {
+            glEnable(GL_ALPHA_TEST);
+            glAlphaFunc(GL_GREATER, 0.5f);
+        }
+
+        super.drawString(str, x, y, drawer);
+
+        drawer.flush();
+
+        if (shader)
+        {
+            SdfShader.unbind();
+        }
+        else
+        {
+            glDisable(GL_ALPHA_TEST);
+        }
+    }
+
+    /**
+     * Creates the same font with another size, sharing the glyphs of this
+     * one.
+     *
+     * @param size The size of the new font
+     *
+     * @return The new font, without outline or shadow
+     */
+    @Override
+    public GlFont derive(float size)
+    {
+        return new SdfFont(this, size);
+    }
+
+    /**
+     * Draws an outline around the glyphs.
+     *
+     * @param color The outline color, or null to remove the outline.
+     * @param width The outline width, in pixels (at most {@link #SPREAD} at
+     *            the rendering size).
+     */
+    public void setOutline(Color color, float width)
+    {
+        this.outlineColor = color;
+        this.outlineWidth = width;
+    }
+
+    /**
+     * Draws a shadow under the glyphs.
+     *
+     * @param color The shadow color, or null to remove the shadow.
+     * @param offsetX The horizontal offset of the shadow, in pixels (at most
+     *            {@link #SPREAD} at the rendering size).
+     * @param offsetY The vertical offset of the shadow, in pixels (at most
+     *            {@link #SPREAD} at the rendering size).
+     * @param softness The blur of the shadow, in pixels.
+     */
+    public void setShadow(Color color, float offsetX, float offsetY, float softness)
+    {
+        this.shadowColor = color;
+        this.shadowOffsetX = offsetX;
+        this.shadowOffsetY = offsetY;
+        this.shadowSoftness = softness;
+    }
+
+    /**
+     * Converts a rendered glyph to a distance field, with {@link #SPREAD}
+     * pixels added around it. The distance is stored in the alpha, 0.5 being
+     * the glyph edge.
+     *
+     * @param glyph The alpha of the rendered glyph.
+     * @param glyphWidth The width of the rendered glyph.
+     * @param glyphHeight The height of the rendered glyph.
+     *
+     * @return The distance field, as alpha.
+     */
+    static byte[] toDistanceField(byte[] glyph, int glyphWidth, int glyphHeight)
+    {
+        int width = glyphWidth + SPREAD * 2;
+        int height = glyphHeight + SPREAD * 2;
+
+        double[] outside = new double[width * height];
+        double[] inside = new double[width * height];
+
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                int gx = x - SPREAD;
+                int gy = y - SPREAD;
+
+                boolean in = gx >= 0 && gy >= 0 && gx < glyphWidth && gy < glyphHeight && (glyph[gy * glyphWidth + gx] & 0xFF) >= 128;
+
+                outside[y * width + x] = in ? 0 : FAR;
+                inside[y * width + x] = in ? FAR : 0;
+            }
+        }
+
+        distanceTransform(outside, width, height);
+        distanceTransform(inside, width, height);
+
+        byte[] field = new byte[width * height];
+
+        for (int i = 0; i < field.length; i++)
+        {
+            double distance = Math.sqrt(outside[i]) - Math.sqrt(inside[i]);
+            double alpha = 0.5 - distance / (2 * SPREAD);
+
+            int a = (int) (Math.max(0.0, Math.min(1.0, alpha)) * 255.0 + 0.5);
+            field[i] = (byte) a;
+        }
+
+        return field;
+    }
+
+    /**
+     * Replaces each value of the grid by its squared euclidean distance to
+     * the nearest zero (Felzenszwalb and Huttenlocher algorithm : one pass on
+     * the columns, then one on the rows).
+     *
+     * @param grid The grid, 0 for the targets and {@link #FAR} for the others.
+     * @param width The grid width.
+     * @param height The grid height.
+     */
+    private static void distanceTransform(double[] grid, int width, int height)
+    {
+        int n = Math.max(width, height);
+
+        double[] f = new double[n];
+        double[] d = new double[n];
+        double[] z = new double[n + 1];
+        int[] v = new int[n];
+
+        for (int x = 0; x < width; x++)
+        {
+            for (int y = 0; y < height; y++)
+                f[y] = grid[y * width + x];
+
+            distanceTransform(f, d, v, z, height);
+
+            for (int y = 0; y < height; y++)
+                grid[y * width + x] = d[y];
+        }
+
+        for (int y = 0; y < height; y++)
+        {
+            System.arraycopy(grid, y * width, f, 0, width);
+            distanceTransform(f, d, v, z, width);
+            System.arraycopy(d, 0, grid, y * width, width);
+        }
+    }
+
+    /**
+     * One dimension squared distance transform, the lower envelope of the
+     * parabolas rooted at each value.
+     */
+    private static void distanceTransform(double[] f, double[] d, int[] v, double[] z, int n)
+    {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -FAR;
+        z[1] = FAR;
+
+        for (int q = 1; q < n; q++)
+        {
+            double s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+
+            while (s <= z[k])
+            {
+                k--;
+                s = ((f[q] + q * q) - (f[v[k]] + v[k] * v[k])) / (2 * q - 2 * v[k]);
+            }
+
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = FAR;
+        }
+
+        k = 0;
+
+        for (int q = 0; q < n; q++)
+        {
+            while (z[k + 1] < q)
+                k++;
+
+            d[q] = (q - v[k]) * (q - v[k]) + f[v[k]];
+        }
+    }
+
+    /**
+     * Create a SDF font from an AWT font
+     *
+     * @param font The AWT font to use, with the size to draw at
+     *
+     * @return The created font
+     */
+    static SdfFont fromAwt(Font font)
+    {
+        return new SdfFont(CHARS, font);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import org.libnoctis.render.Color;
+import org.lwjgl.opengl.GLContext;
+
+
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL20.*;
+
+/**
+ * The SDF Shader
+ *
+ * <p>
+ *     The fragment shader drawing the glyphs of a {@link SdfFont}. Glyph
+ *     textures contain the distance to the glyph edge in their alpha, the
+ *     shader turns it back into a sharp (and optionally outlined and
+ *     shadowed) glyph at any size. Vertices are handled by the fixed
+ *     pipeline, so it works with every drawer.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+final class SdfShader
+{
+    private static final String FRAGMENT_SHADER = ""
+            + "uniform sampler2D glyphs;\n"
+            + "uniform vec4 outlineColor;\n"
+            + "uniform float outlineWidth;\n"
+            + "uniform vec4 shadowColor;\n"
+            + "uniform vec2 shadowOffset;\n"
+            + "uniform float shadowSoftness;\n"
+            + "\n"
+            + "vec4 over(vec4 top, vec4 bottom)\n"
+            + "{\n"
+            + "    float alpha = top.a + bottom.a * (1.0 - top.a);\n"
+            + "    vec3 rgb = (top.rgb * top.a + bottom.rgb * bottom.a * (1.0 - top.a)) / max(alpha, 0.0001);\n"
+            + "    return vec4(rgb, alpha);\n"
+            + "}\n"
+            + "\n"
+            + "void main()\n"
+            + "{\n"
+            + "    float distance = texture2D(glyphs, gl_TexCoord[0].st).a;\n"
+            + "    float smoothing = max(fwidth(distance) * 0.7, 0.001);\n"
+            + "    vec4 color = vec4(gl_Color.rgb, gl_Color.a * smoothstep(0.5 - smoothing, 0.5 + smoothing, distance));\n"
+            + "\n"
+            + "    if (outlineWidth > 0.0)\n"
+            + "    {\n"
+            + "        float outline = smoothstep(0.5 - outlineWidth - smoothing, 0.5 - outlineWidth + smoothing, distance);\n"
+            + "        color = over(color, vec4(outlineColor.rgb, outlineColor.a * gl_Color.a * outline));\n"
+            + "    }\n"
+            + "\n"
+            + "    if (shadowColor.a > 0.0)\n"
+            + "    {\n"
+            + "        float shadowDistance = texture2D(glyphs, gl_TexCoord[0].st - shadowOffset).a;\n"
+            + "        float shadow = smoothstep(0.5 - shadowSoftness - smoothing, 0.5 + shadowSoftness + smoothing, shadowDistance);\n"
+            + "        color = over(color, vec4(shadowColor.rgb, shadowColor.a * gl_Color.a * shadow));\n"
+            + "    }\n"
+            + "\n"
+            + "    gl_FragColor = color;\n"
+            + "}\n";
+
+    private static int program = -1;
+
+    private static int outlineColorLocation;
+    private static int outlineWidthLocation;
+    private static int shadowColorLocation;
+    private static int shadowOffsetLocation;
+    private static int shadowSoftnessLocation;
+
+    private SdfShader()
+    {
+    }
+
+    /**
+     * @return {@code true} if shaders can be used.
+     */
+    static boolean isSupported()
+    {
+        return GLContext.getCapabilities().OpenGL20;
+    }
+
+    /**
+     * Uses the shader for the next drawn glyphs, compiling it the first time.
+     *
+     * @param outlineColor The outline color, or null for no outline.
+     * @param outlineWidth The outline width, in distance units (0.0 - 0.5).
+     * @param shadowColor The shadow color, or null for no shadow.
+     * @param shadowOffsetU The shadow horizontal offset, in texture units.
+     * @param shadowOffsetV The shadow vertical offset, in texture units.
+     * @param shadowSoftness The shadow blur, in distance units (0.0 - 0.5).
+     */
+    static void bind(Color outlineColor, float outlineWidth, Color shadowColor, float shadowOffsetU, float shadowOffsetV, float shadowSoftness)
+    {
+        if (program == -1)
+        {
+            program = compile();
+        }
+
+        glUseProgram(program);
+
+        if (outlineColor != null)
+        {
+            glUniform4f(outlineColorLocation, outlineColor.getRedFloat(), outlineColor.getGreenFloat(), outlineColor.getBlueFloat(), outlineColor.getAlphaFloat());
+            glUniform1f(outlineWidthLocation, outlineWidth);
+        }
+        else
+        {
+            glUniform1f(outlineWidthLocation, 0.0f);
+        }
+
+        if (shadowColor != null)
+        {
+            glUniform4f(shadowColorLocation, shadowColor.getRedFloat(), shadowColor.getGreenFloat(), shadowColor.getBlueFloat(), shadowColor.getAlphaFloat());
+            glUniform2f(shadowOffsetLocation, shadowOffsetU, shadowOffsetV);
+            glUniform1f(shadowSoftnessLocation, shadowSoftness);
+        }
+        else
+        {
+            glUniform4f(shadowColorLocation, 0.0f, 0.0f, 0.0f, 0.0f);
+        }
+    }
+
+    /**
+     * Goes back to the fixed pipeline.
+     */
+    static void unbind()
+    {
+        glUseProgram(0);
+    }
+
+    /**
+     * Compiles and links the shader program.
+     *
+     * @return The program ID.
+     */
+    private static int compile()
+    {
+        int shader = glCreateShader(GL_FRAGMENT_SHADER);
+        glShaderSource(shader, FRAGMENT_SHADER);
+        glCompileShader(shader);
+
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) == GL_FALSE)
+        {
+            String log = glGetShaderInfoLog(shader, 4096);
+            glDeleteShader(shader);
+
+            throw new IllegalStateException("Can't compile the SDF shader : " + log);
+        }
+
+        int program = glCreateProgram();
+        glAttachShader(program, shader);
+        glLinkProgram(program);
+
+        // Flagged for deletion, deleted with the program
+        glDeleteShader(shader);
+
+        if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE)
+        {
+            String log = glGetProgramInfoLog(program, 4096);
+            glDeleteProgram(program);
+
+            throw new IllegalStateException("Can't link the SDF shader : " + log);
+        }
+
+        glUseProgram(program);
+        glUniform1i(glGetUniformLocation(program, "glyphs"), 0);
+        glUseProgram(0);
+
+        outlineColorLocation = glGetUniformLocation(program, "outlineColor");
+        outlineWidthLocation = glGetUniformLocation(program, "outlineWidth");
+        shadowColorLocation = glGetUniformLocation(program, "shadowColor");
+        shadowOffsetLocation = glGetUniformLocation(program, "shadowOffset");
+        shadowSoftnessLocation = glGetUniformLocation(program, "shadowSoftness");
+
+        return program;
+    }
+}
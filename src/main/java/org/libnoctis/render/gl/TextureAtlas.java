@@ -0,0 +1,602 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.render.gl;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.libnoctis.util.Dimension;
+
+/**
+ * The Texture Atlas
+ *
+ * <p>
+ *     Packs many little images into a few big shared textures (pages), so
+ *     that drawing them doesn't need a texture change. Each added image is
+ *     given back as a {@link GlTexture} covering its region of the page, that
+ *     can be drawn as any other texture.
+ * </p>
+ *
+ * <p>
+ *     Images are packed in rows (shelves), and never moved once packed. Images
+ *     too big to fit in a page get their own texture. The slot of a released
+ *     texture is reused by the next images fitting in it, and a page is
+ *     released once it is unused. Slots of textures garbage collected
+ *     without being released are given back too.
+ * </p>
+ *
+ * <p>
+ *     Pages only account the area of their slots in use in the
+ *     {@link GlResourceManager}, so evicting a cached region lowers the
+ *     estimated memory used.
+ * </p>
+ *
+ * <p>
+ *     The border pixels of each image are repeated around it, so filtering
+ *     the texture at its edges never samples the neighbour images or the
+ *     uninitialized parts of the page.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class TextureAtlas
+{
+    /**
+     * Default size of a page, in pixels.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+
+    /**
+     * Pixels added on each side of a packed image, filled with its border
+     * pixels to avoid bleeding when the textures are filtered.
+     */
+    private static final int PADDING = 1;
+
+    /**
+     * The size of the pages, in pixels.
+     */
+    private final int pageSize;
+
+    /**
+     * The pages of this atlas, the last one being the one filled.
+     */
+    private final List<Page> pages = new ArrayList<Page>();
+
+    /**
+     * The slots of the textures given and not disposed yet.
+     */
+    private final Set<Slot> slots = new HashSet<Slot>();
+
+    /**
+     * Where the slots whose texture was garbage collected arrive.
+     */
+    private final ReferenceQueue<AtlasTexture> collected = new ReferenceQueue<AtlasTexture>();
+
+    /**
+     * Creates an atlas with pages of the default size (or the maximum texture
+     * size if it is smaller).
+     */
+    public TextureAtlas()
+    {
+        this(DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param pageSize The size of the pages, in pixels.
+     */
+    public TextureAtlas(int pageSize)
+    {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Packs the given image in this atlas. Must be called from the render
+     * Thread.
+     *
+     * @param image The image to be packed.
+     *
+     * @return A texture covering the packed image.
+     */
+    public GlTexture add(BufferedImage image)
+    {
+        freeCollected();
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = getPageSize();
+
+        if (width + PADDING * 2 > size || height + PADDING * 2 > size)
+        {
+            return new GlTexture(image);
+        }
+
+        for (Page page : pages)
+        {
+            GlTexture texture = page.add(this, image);
+
+            if (texture != null)
+            {
+                return texture;
+            }
+        }
+
+        Page page = new Page(size);
+        pages.add(page);
+
+        return page.add(this, image);
+    }
+
+    /**
+     * Gives back the slots of the textures garbage collected without being
+     * released.
+     */
+    private void freeCollected()
+    {
+        Reference<? extends AtlasTexture> reference;
+
+        while ((reference = collected.poll()) != null)
+        {
+            free((Slot) reference);
+        }
+    }
+
+    /**
+     * Called when a texture is disposed or garbage collected, giving its slot
+     * back. Once a page has no texture left, it is emptied, or released if it
+     * isn't the only one.
+     *
+     * @param slot The slot of the texture.
+     */
+    private void free(Slot slot)
+    {
+        if (!slots.remove(slot))
+        {
+            return;
+        }
+
+        slot.clear();
+
+        Page page = slot.page;
+        page.setUsedBytes(page.usedBytes - GlTexture.estimateBytes(slot.width, slot.shelf.height));
+
+        if (--page.textures > 0)
+        {
+            page.free(slot.shelf, slot.x, slot.width);
+            return;
+        }
+
+        if (pages.size() > 1 && pages.remove(page))
+        {
+            page.texture.release();
+        }
+        else
+        {
+            page.shelves.clear();
+            page.nextShelfY = 0;
+            page.setUsedBytes(0);
+        }
+    }
+
+    /**
+     * @return The textures of the pages of this atlas.
+     */
+    public List<GlTexture> getPages()
+    {
+        List<GlTexture> textures = new ArrayList<GlTexture>(pages.size());
+
+        for (Page page : pages)
+        {
+            textures.add(page.texture);
+        }
+
+        return textures;
+    }
+
+    /**
+     * Releases all the pages of this atlas, the textures it gave become
+     * invalid.
+     */
+    public void release()
+    {
+        for (Page page : pages)
+        {
+            page.texture.release();
+        }
+
+        pages.clear();
+
+        for (Slot slot : slots)
+        {
+            slot.clear();
+        }
+
+        slots.clear();
+    }
+
+    /**
+     * Copies an image with {@link #PADDING} pixels added on each side,
+     * repeating its border pixels.
+     *
+     * @param image The image.
+     *
+     * @return The padded copy.
+     */
+    private static BufferedImage extrude(BufferedImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int paddedWidth = width + PADDING * 2;
+
+        int[] source = image.getRGB(0, 0, width, height, null, 0, width);
+        int[] padded = new int[paddedWidth * (height + PADDING * 2)];
+
+        for (int y = 0; y < height + PADDING * 2; y++)
+        {
+            int sourceRow = Math.min(Math.max(y - PADDING, 0), height - 1) * width;
+            int row = y * paddedWidth;
+
+            System.arraycopy(source, sourceRow, padded, row + PADDING, width);
+
+            for (int i = 0; i < PADDING; i++)
+            {
+                padded[row + i] = source[sourceRow];
+                padded[row + PADDING + width + i] = source[sourceRow + width - 1];
+            }
+        }
+
+        BufferedImage result = new BufferedImage(paddedWidth, height + PADDING * 2, BufferedImage.TYPE_INT_ARGB);
+        result.setRGB(0, 0, paddedWidth, height + PADDING * 2, padded, 0, paddedWidth);
+
+        return result;
+    }
+
+    /**
+     * @return The size of the pages, limited by the maximum texture size.
+     */
+    private int getPageSize()
+    {
+        return Math.min(pageSize, GlCaps.getMaxTextureSize());
+    }
+
+    /**
+     * A page of the atlas : one big texture, filled row by row.
+     */
+    private static class Page
+    {
+        private final GlTexture texture;
+        private final int size;
+        private final TextureRegion.Builder regionBuilder;
+
+        /**
+         * Rows of this page, from top to bottom.
+         */
+        private final List<Shelf> shelves = new ArrayList<Shelf>();
+
+        /**
+         * Y coordinate where the next row will start.
+         */
+        private int nextShelfY;
+
+        /**
+         * The number of textures given by this page and not disposed.
+         */
+        private int textures;
+
+        /**
+         * The estimated memory used by the slots in use, in bytes.
+         */
+        private long usedBytes;
+
+        Page(int size)
+        {
+            this.size = size;
+            this.texture = new GlTexture(size, size);
+            this.regionBuilder = new TextureRegion.Builder(size, size);
+
+            texture.setEstimatedBytes(0);
+        }
+
+        void setUsedBytes(long usedBytes)
+        {
+            this.usedBytes = usedBytes;
+            texture.setEstimatedBytes(usedBytes);
+        }
+
+        GlTexture add(TextureAtlas atlas, BufferedImage image)
+        {
+            int width = image.getWidth() + PADDING * 2;
+            int height = image.getHeight() + PADDING * 2;
+
+            Shelf target = null;
+            int[] targetSlot = null;
+
+            // The lowest shelf with a freed slot or room at its end
+            for (Shelf shelf : shelves)
+            {
+                if (shelf.height < height || (target != null && shelf.height >= target.height))
+                    continue;
+
+                int[] slot = shelf.findSlot(width);
+
+                if (slot != null || shelf.nextX + width <= size)
+                {
+                    target = shelf;
+                    targetSlot = slot;
+                }
+            }
+
+            if (target == null)
+            {
+                if (nextShelfY + height > size)
+                {
+                    return null;
+                }
+
+                target = new Shelf(nextShelfY, height);
+                shelves.add(target);
+                nextShelfY += height;
+            }
+
+            int x;
+
+            if (targetSlot != null)
+            {
+                x = targetSlot[0];
+                targetSlot[0] += width;
+                targetSlot[1] -= width;
+
+                if (targetSlot[1] == 0)
+                    target.slots.remove(targetSlot);
+            }
+            else
+            {
+                x = target.nextX;
+                target.nextX += width;
+            }
+
+            int y = target.y;
+
+            texture.upload(extrude(image), x, y);
+            textures++;
+            setUsedBytes(usedBytes + GlTexture.estimateBytes(width, target.height));
+
+            AtlasTexture result = new AtlasTexture(atlas, this, regionBuilder.build(x + PADDING, y + PADDING, image.getWidth(), image.getHeight()), x, y, new Dimension(image.getWidth(), image.getHeight()));
+            result.slot = new Slot(result, atlas.collected, this, target, x, width);
+            atlas.slots.add(result.slot);
+
+            return result;
+        }
+
+        /**
+         * Gives a slot back to its shelf. Empty shelves at the bottom of the
+         * page are removed, so rows of any height can use their space.
+         */
+        void free(Shelf shelf, int x, int width)
+        {
+            shelf.free(x, width);
+
+            while (!shelves.isEmpty())
+            {
+                Shelf last = shelves.get(shelves.size() - 1);
+
+                if (last.nextX > 0)
+                    break;
+
+                shelves.remove(shelves.size() - 1);
+                nextShelfY = last.y;
+            }
+        }
+    }
+
+    /**
+     * A row of a page.
+     */
+    private static class Shelf
+    {
+        private final int y;
+        private final int height;
+
+        /**
+         * X coordinate where the next slot will start, the end of the row.
+         */
+        private int nextX;
+
+        /**
+         * Freed slots before the end of the row, as {x, width} pairs sorted
+         * by x, never adjacent.
+         */
+        private final List<int[]> slots = new ArrayList<int[]>();
+
+        Shelf(int y, int height)
+        {
+            this.y = y;
+            this.height = height;
+        }
+
+        /**
+         * @return The narrowest freed slot at least as wide as given, or null.
+         */
+        int[] findSlot(int width)
+        {
+            int[] best = null;
+
+            for (int[] slot : slots)
+            {
+                if (slot[1] >= width && (best == null || slot[1] < best[1]))
+                    best = slot;
+            }
+
+            return best;
+        }
+
+        /**
+         * Gives a slot back, merging it with the freed slots around it.
+         */
+        void free(int x, int width)
+        {
+            int index = 0;
+
+            while (index < slots.size() && slots.get(index)[0] < x)
+                index++;
+
+            int[] slot = new int[] {x, width};
+
+            // Merge with the previous slot
+            if (index > 0 && slots.get(index - 1)[0] + slots.get(index - 1)[1] == x)
+            {
+                slot = slots.remove(--index);
+                slot[1] += width;
+            }
+
+            // Merge with the next slot
+            if (index < slots.size() && slot[0] + slot[1] == slots.get(index)[0])
+            {
+                slot[1] += slots.remove(index)[1];
+            }
+
+            if (slot[0] + slot[1] == nextX)
+            {
+                // At the end of the row
+                nextX = slot[0];
+            }
+            else
+            {
+                slots.add(index, slot);
+            }
+        }
+    }
+
+    /**
+     * The slot of a given texture, tracked so it is given back even if the
+     * texture is garbage collected without being released.
+     */
+    private static class Slot extends PhantomReference<AtlasTexture>
+    {
+        private final Page page;
+        private final Shelf shelf;
+
+        /**
+         * The X position of the padded slot in the page, in pixels.
+         */
+        private final int x;
+
+        /**
+         * The width of the padded slot, in pixels.
+         */
+        private final int width;
+
+        Slot(AtlasTexture texture, ReferenceQueue<AtlasTexture> queue, Page page, Shelf shelf, int x, int width)
+        {
+            super(texture, queue);
+
+            this.page = page;
+            this.shelf = shelf;
+            this.x = x;
+            this.width = width;
+        }
+    }
+
+    /**
+     * A texture covering a part of an atlas page.
+     */
+    public static class AtlasTexture extends GlTexture
+    {
+        /**
+         * The atlas containing this texture.
+         */
+        private final TextureAtlas atlas;
+
+        /**
+         * The page containing this texture.
+         */
+        private final Page page;
+
+        /**
+         * The part of the page covered by this texture.
+         */
+        private final TextureRegion region;
+
+        /**
+         * The position of the padded slot of this texture in the page, in
+         * pixels.
+         */
+        private final int x, y;
+
+        /**
+         * The slot of this texture, given back when it is disposed.
+         */
+        private Slot slot;
+
+        AtlasTexture(TextureAtlas atlas, Page page, TextureRegion region, int x, int y, Dimension dimensions)
+        {
+            super(page.texture.getId(), dimensions);
+
+            this.atlas = atlas;
+            this.page = page;
+            this.region = region;
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * @return The atlas page containing this texture.
+         */
+        public GlTexture getPage()
+        {
+            return page.texture;
+        }
+
+        @Override
+        public TextureRegion getRegion()
+        {
+            return region;
+        }
+
+        /**
+         * Replaces the content of this region. The image must have the same
+         * size as the region.
+         */
+        @Override
+        public void upload(BufferedImage image)
+        {
+            if (image.getWidth() != getDimensions().getWidth() || image.getHeight() != getDimensions().getHeight())
+            {
+                throw new IllegalArgumentException("Can't resize an atlas region (" + getDimensions().getWidth() + "x" + getDimensions().getHeight() + " to " + image.getWidth() + "x" + image.getHeight() + ")");
+            }
+
+            page.texture.upload(extrude(image), x, y);
+        }
+
+        /**
+         * Gives the region back to its page.
+         */
+        @Override
+        protected void dispose()
+        {
+            atlas.free(slot);
+        }
+    }
+}
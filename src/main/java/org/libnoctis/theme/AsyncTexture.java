@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.theme;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.libnoctis.render.gl.GlTexture;
+
+/**
+ * An Asynchronously Loaded Texture
+ *
+ * <p>
+ *     A handle on a theme texture being decoded in background, returned by
+ *     {@link NoctisTheme#loadTexture}. The texture is available once it has
+ *     been uploaded by the frame thread, until then components can draw a
+ *     placeholder.
+ * </p>
+ *
+ * @author Litarvan
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class AsyncTexture
+{
+    /**
+     * The path of the texture (in the textures folder of the theme).
+     */
+    private final String path;
+
+    /**
+     * The loaded texture, null until it is uploaded.
+     */
+    private volatile GlTexture texture;
+
+    /**
+     * The error that happened while loading the texture, if any.
+     */
+    private volatile ThemeRequiredException error;
+
+    /**
+     * The tasks to execute once the texture is loaded (or failed to).
+     */
+    private final List<Runnable> listeners = new ArrayList<Runnable>();
+
+    /**
+     * {@code true} if the texture is loaded, or failed to.
+     */
+    private boolean done;
+
+    /**
+     * An Asynchronously Loaded Texture.
+     *
+     * @param path The path of the texture (in the textures folder of the theme).
+     */
+    AsyncTexture(String path)
+    {
+        this.path = path;
+    }
+
+    /**
+     * @return The path of the texture (in the textures folder of the theme).
+     */
+    @NotNull
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * @return {@code true} if the texture is loaded, or failed to.
+     */
+    public boolean isDone()
+    {
+        synchronized (listeners)
+        {
+            return done;
+        }
+    }
+
+    /**
+     * @return {@code true} if the texture is loaded and can be drawn.
+     */
+    public boolean isLoaded()
+    {
+        return texture != null;
+    }
+
+    /**
+     * @return The loaded texture, or null if it isn't loaded yet (or failed
+     *         to).
+     */
+    @Nullable
+    public GlTexture getTexture()
+    {
+        return texture;
+    }
+
+    /**
+     * @return The error that happened while loading the texture, or null if
+     *         it didn't fail.
+     */
+    @Nullable
+    public ThemeRequiredException getError()
+    {
+        return error;
+    }
+
+    /**
+     * Executes the given task once the texture is loaded, or failed to, from
+     * the frame thread that uploaded it. If it is already done, the task is
+     * executed right now. Errors thrown by the tasks are printed, not
+     * propagated.
+     *
+     * @param listener The task to execute.
+     */
+    public void whenDone(@NotNull Runnable listener)
+    {
+        synchronized (listeners)
+        {
+            if (!done)
+            {
+                listeners.add(listener);
+                return;
+            }
+        }
+
+        try
+        {
+            listener.run();
+        }
+        catch (Throwable throwable)
+        {
+            throwable.printStackTrace();
+        }
+    }
+
+    /**
+     * Called from the frame thread when the texture is uploaded.
+     *
+     * @param texture The uploaded texture.
+     */
+    void complete(GlTexture texture)
+    {
+        this.texture = texture;
+        finish();
+    }
+
+    /**
+     * Called from the frame thread when the texture couldn't be loaded.
+     *
+     * @param error The error that happened.
+     */
+    void fail(ThemeRequiredException error)
+    {
+        this.error = error;
+        finish();
+    }
+
+    /**
+     * Marks this texture as done, and executes the waiting tasks.
+     */
+    private void finish()
+    {
+        Runnable[] toRun;
+
+        synchronized (listeners)
+        {
+            done = true;
+            toRun = listeners.toArray(new Runnable[listeners.size()]);
+            listeners.clear();
+        }
+
+        for (Runnable listener : toRun)
+        {
+            // A failing listener mustn't prevent the others from running
+            try
+            {
+                listener.run();
+            }
+            catch (Throwable throwable)
+            {
+                throwable.printStackTrace();
+            }
+        }
+    }
+}
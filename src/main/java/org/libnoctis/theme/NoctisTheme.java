@@ -18,17 +18,25 @@
  */
 package org.libnoctis.theme;
 
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javax.imageio.ImageIO;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.libnoctis.render.gl.GlTexture;
+import org.libnoctis.render.gl.NoctisFrameThread;
+import org.libnoctis.render.gl.TextureAtlas;
 
 /**
  * A Noctis Theme
@@ -49,6 +57,22 @@ public class NoctisTheme
      */
     public static final String TEXTURE_FOLDER = "textures/";
 
+    /**
+     * The threads decoding the textures loaded with {@link #loadTexture}.
+     */
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "Noctis Texture Loader #" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+
     /**
      * The zip file of the theme.
      */
@@ -59,6 +83,21 @@ public class NoctisTheme
      */
     private Properties properties = new Properties();
 
+    /**
+     * The atlas where the theme textures are packed.
+     */
+    private TextureAtlas atlas;
+
+    /**
+     * The textures loaded (or being loaded) with {@link #loadTexture}, by path.
+     */
+    private final ConcurrentHashMap<String, AsyncTexture> asyncTextures = new ConcurrentHashMap<String, AsyncTexture>();
+
+    /**
+     * The textures packed in the atlas, by path, so each one is packed once.
+     */
+    private final ConcurrentHashMap<String, GlTexture> textures = new ConcurrentHashMap<String, GlTexture>();
+
     /**
      * The Noctis Theme.
      *
@@ -177,7 +216,9 @@ public class NoctisTheme
     }
 
     /**
-     * Reads a texture from the zip.
+     * Reads a texture from the zip, and packs it in the theme atlas. The same
+     * texture is returned for every request of the same path, it mustn't be
+     * released.
      *
      * @param path The path of the texture (in the textures folder of the zip).
      *
@@ -188,12 +229,156 @@ public class NoctisTheme
     @Nullable
     public GlTexture texture(@NotNull String path) throws IOException
     {
+        GlTexture texture = textures.get(path);
+
+        if (texture != null)
+            return texture;
+
         BufferedImage image = image(path);
 
         if (image == null)
             return null;
 
-        return new GlTexture(requireImage(path));
+        return pack(path, image);
+    }
+
+    /**
+     * Packs a texture in the atlas, unless it was already packed. Must be
+     * called from the render Thread.
+     *
+     * @param path The path of the texture.
+     * @param image The texture content.
+     *
+     * @return The packed texture.
+     */
+    private GlTexture pack(String path, BufferedImage image)
+    {
+        GlTexture texture = textures.get(path);
+
+        if (texture == null)
+        {
+            texture = getAtlas().add(image);
+            textures.put(path, texture);
+        }
+
+        return texture;
+    }
+
+    /**
+     * Loads a texture from the zip in background. The image is decoded by a
+     * worker thread, and only its upload is done by the given frame thread,
+     * so the frame isn't stalled. The same handle is returned for every
+     * request of the same texture.
+     *
+     * @param path The path of the texture (in the textures folder of the zip).
+     * @param uploader The frame thread that will upload the texture.
+     *
+     * @return A handle on the texture, loaded once its frame thread uploaded
+     *         it. If the texture can't be read, the handle contains a
+     *         {@code ThemeRequiredException}.
+     */
+    @NotNull
+    public AsyncTexture loadTexture(@NotNull final String path, @NotNull final NoctisFrameThread uploader)
+    {
+        if (path == null)
+            throw new IllegalArgumentException("path == null");
+
+        AsyncTexture texture = asyncTextures.get(path);
+
+        if (texture != null)
+            return texture;
+
+        final AsyncTexture handle = new AsyncTexture(path);
+        texture = asyncTextures.putIfAbsent(path, handle);
+
+        if (texture != null)
+            return texture;
+
+        GlTexture packed = textures.get(path);
+
+        if (packed != null)
+        {
+            // Already loaded synchronously
+            handle.complete(packed);
+            return handle;
+        }
+
+        LOADER.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                final BufferedImage image;
+
+                try
+                {
+                    image = toUploadable(requireImage(path));
+                }
+                catch (final ThemeRequiredException e)
+                {
+                    uploader.runLater(new Runnable() {
+                        @Override
+                        public void run()
+                        {
+                            handle.fail(e);
+                        }
+                    });
+
+                    return;
+                }
+
+                uploader.runLater(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            handle.complete(pack(path, image));
+                        }
+                        catch (RuntimeException e)
+                        {
+                            handle.fail(new ThemeRequiredException("Can't upload the texture " + path, e));
+                        }
+                    }
+                });
+            }
+        });
+
+        return handle;
+    }
+
+    /**
+     * Converts the given image, if needed, to a type {@link GlTexture} can
+     * upload without reading each pixel.
+     *
+     * @param image The image to convert.
+     *
+     * @return The given image, or an ARGB copy of it.
+     */
+    private static BufferedImage toUploadable(BufferedImage image)
+    {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_4BYTE_ABGR)
+            return image;
+
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D g2d = converted.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+
+        return converted;
+    }
+
+    /**
+     * @return The atlas where the theme textures (and the generated nine
+     *         patches) are packed.
+     */
+    @NotNull
+    public TextureAtlas getAtlas()
+    {
+        if (atlas == null)
+            atlas = new TextureAtlas();
+
+        return atlas;
     }
 
     /**
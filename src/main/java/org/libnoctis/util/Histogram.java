@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015-2016 Adrien "Litarvan" Navratil & Victor "Wytrem"
+ *
+ * This file is part of Libnoctis.
+ *
+ * Libnoctis is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Libnoctis is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Libnoctis. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.libnoctis.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Histogram
+ *
+ * <p>
+ *     Counts recorded values (durations in nanoseconds, for example) in
+ *     buckets whose width grows with the values, so that any value is known
+ *     with about 6% precision. Values can be recorded and read from any
+ *     Thread without locking.
+ * </p>
+ *
+ * @author Wytrem
+ * @version 0.1.0
+ * @since 0.1.0
+ */
+public class Histogram
+{
+    /**
+     * Number of bits of precision of the buckets : there are
+     * {@code 1 << SUB_BUCKET_BITS} buckets by power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values are clamped to {@code 2^MAX_EXPONENT - 1}.
+     */
+    private static final int MAX_EXPONENT = 48;
+
+    /**
+     * The number of values recorded in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value The value, negative values are counted as 0.
+     */
+    public void record(long value)
+    {
+        if (value < 0)
+            value = 0;
+
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long current;
+
+        while (value > (current = max.get()))
+        {
+            if (max.compareAndSet(current, value))
+                break;
+        }
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return The biggest recorded value, 0 if there is none.
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @return The mean of the recorded values, 0 if there is none.
+     */
+    public double getMean()
+    {
+        long n = count.get();
+
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Gives the value below which a given part of the recorded values are.
+     *
+     * @param percentile The part of the values, between 0 and 100 (50 for the
+     *            median).
+     *
+     * @return The highest value of the bucket containing the percentile, 0 if
+     *         there is no value.
+     */
+    public long getPercentile(double percentile)
+    {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Invalid percentile : " + percentile);
+
+        long[] snapshot = new long[counts.length()];
+        long n = 0;
+
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+
+        if (n == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            seen += snapshot[i];
+
+            if (seen >= rank)
+                return Math.min(lowestValueOf(i + 1) - 1, max.get());
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Removes all the recorded values. Values recorded during the reset may be
+     * partly kept.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < counts.length(); i++)
+        {
+            counts.set(i, 0);
+        }
+
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    private int indexOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+        if (exponent >= MAX_EXPONENT)
+            return counts.length() - 1;
+
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowestValueOf(int index)
+    {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Histogram[count=" + getCount() + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99) + ", max=" + getMax() + "]";
+    }
+}
@@ -97,6 +97,14 @@ public class Vector2i
         this.y = y;
     }
 
+    public Vector2i set(int x, int y)
+    {
+        this.x = x;
+        this.y = y;
+
+        return this;
+    }
+
     public Vector2i add(int x, int y)
     {
         this.x += x;